@@ -0,0 +1,93 @@
+package dev.mccue.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// The future returned by {@link DataSources#transactAsync(javax.sql.DataSource, TransactionOptions, SQLFunction)}.
+///
+/// Cancelling it interrupts the thread running the transaction and cancels any
+/// statement the body has made, so that a query blocked in the driver stops.
+final class AsyncTransaction<T> extends CompletableFuture<T> {
+    private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+    private volatile Thread thread;
+
+    void runOn(Thread thread) {
+        this.thread = thread;
+        // Cancelled before the thread was known
+        if (isCancelled()) {
+            thread.interrupt();
+        }
+    }
+
+    /// Wraps the connection given to the body so that the statements it makes can be cancelled.
+    Connection track(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Tracker(connection)
+        );
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        var cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            for (var statement : statements) {
+                try {
+                    statement.cancel();
+                } catch (SQLException ignored) {
+                    // Already closed, or the driver can't cancel
+                }
+            }
+            var thread = this.thread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        return cancelled;
+    }
+
+    private final class Tracker implements InvocationHandler {
+        private final Connection connection;
+
+        Tracker(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return connection.toString();
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement statement) {
+                statements.add(statement);
+                if (isCancelled()) {
+                    statement.cancel();
+                }
+            }
+            return result;
+        }
+    }
+}
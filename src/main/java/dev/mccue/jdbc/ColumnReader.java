@@ -0,0 +1,36 @@
+package dev.mccue.jdbc;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Knows how to read a value of a given type from a column of a {@link ResultSet}.
+ * @param <T> The type of value it will read.
+ */
+@FunctionalInterface
+public interface ColumnReader<T> {
+    /**
+     * Reads the value in the column of the current row.
+     * @param rs The {@link ResultSet} to read from.
+     * @param columnIndex The index of the column, starting at 1.
+     * @return The value, which may be null if the column is null.
+     * @throws SQLException If the driver throws an exception or the value cannot be converted.
+     */
+    T read(ResultSet rs, int columnIndex) throws SQLException;
+
+    /**
+     * Reads the value in the column of the current row.
+     *
+     * <p>
+     *     By default this finds the index of the column with {@link ResultSet#findColumn(String)}.
+     * </p>
+     *
+     * @param rs The {@link ResultSet} to read from.
+     * @param columnLabel The label of the column.
+     * @return The value, which may be null if the column is null.
+     * @throws SQLException If the driver throws an exception or the value cannot be converted.
+     */
+    default T read(ResultSet rs, String columnLabel) throws SQLException {
+        return read(rs, rs.findColumn(columnLabel));
+    }
+}
@@ -0,0 +1,76 @@
+package dev.mccue.jdbc;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// One {@link ReentrantLock} per connection, used to keep two threads from running
+/// transactions on the same connection at once.
+///
+/// Holding a monitor during blocking I/O pins a virtual thread to its carrier,
+/// which a {@link ReentrantLock} does not. Locks are keyed on the identity of the
+/// unwrapped connection, never on its {@code equals}, and are dropped once it is
+/// no longer reachable. Looking up a lock takes no lock of its own.
+final class ConnectionLocks {
+    private ConnectionLocks() {}
+
+    private static final ConcurrentHashMap<Key, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private static final ReferenceQueue<Connection> COLLECTED = new ReferenceQueue<>();
+
+    /// A weak reference to a connection which is equal only to references to the same connection.
+    private static final class Key extends WeakReference<Connection> {
+        private final int hash;
+
+        Key(Connection raw, ReferenceQueue<Connection> queue) {
+            super(raw, queue);
+            this.hash = System.identityHashCode(raw);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key other)) {
+                return false;
+            }
+            var raw = get();
+            return raw != null && raw == other.get();
+        }
+    }
+
+    private static void purge() {
+        for (var key = COLLECTED.poll(); key != null; key = COLLECTED.poll()) {
+            LOCKS.remove(key);
+        }
+    }
+
+    private static ReentrantLock lockFor(Connection raw) {
+        purge();
+        var lock = LOCKS.get(new Key(raw, null));
+        if (lock != null) {
+            return lock;
+        }
+        return LOCKS.computeIfAbsent(new Key(raw, COLLECTED), __ -> new ReentrantLock());
+    }
+
+    /// Acquires the lock for the connection, only timing the wait when it is
+    /// already held by another thread.
+    static ReentrantLock lock(Connection raw) {
+        var lock = lockFor(raw);
+        if (!lock.tryLock()) {
+            var start = System.nanoTime();
+            lock.lock();
+            TransactionMetrics.recordLockWait(System.nanoTime() - start);
+        }
+        return lock;
+    }
+}
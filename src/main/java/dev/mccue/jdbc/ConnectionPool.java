@@ -0,0 +1,677 @@
+package dev.mccue.jdbc;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DataSource} which keeps connections from another {@link DataSource} open and
+ * hands them out again instead of opening a new one each time.
+ *
+ * <p>
+ *     Idle connections are kept in a lock-free stack, so the most recently used connection is
+ *     handed out first. Threads waiting for a connection queue on a fair {@link Semaphore}, and
+ *     nothing in the pool holds a monitor while waiting, so it works well with virtual threads.
+ * </p>
+ *
+ * <p>
+ *     A connection which has been idle for longer than the validation interval is checked with
+ *     {@link Connection#isValid(int)} before being handed out. Connections are closed once
+ *     they reach their max lifetime or have been idle for longer than the idle timeout. If leak
+ *     detection is on, a warning is logged with the stack trace of where a connection was taken
+ *     from the pool if it is held for longer than the threshold.
+ * </p>
+ *
+ * <p>
+ *     Closing a connection from the pool returns it. Statements made from it are closed, any open
+ *     transaction is rolled back, and its auto-commit mode, transaction isolation level and read-only
+ *     flag are reset to what they were when it was opened. Connections from the pool track those values like ones from
+ *     {@link Connections#trackState(Connection)}, so checking them does not cost a round trip. Connections
+ *     and statements from the pool are plain wrappers, not dynamic proxies, so every other call goes straight
+ *     to the driver.
+ *     {@link Connection#unwrap(Class)} gives back the physical connection, while
+ *     {@link Statement#getConnection()} gives back the pooled one.
+ * </p>
+ *
+ * <pre>{@code
+ * var pool = ConnectionPool.builder(db)
+ *         .maxSize(10)
+ *         .leakDetectionThreshold(Duration.ofSeconds(30))
+ *         .build();
+ *
+ * DataSources.transact(pool, conn -> {
+ *     // ...
+ * });
+ * }</pre>
+ */
+public final class ConnectionPool implements DataSource, AutoCloseable {
+    private static final System.Logger LOG = System.getLogger(ConnectionPool.class.getName());
+
+    private final DataSource dataSource;
+    private final int maxSize;
+    private final long connectionTimeoutNanos;
+    private final long validationIntervalNanos;
+    private final int validationTimeoutSeconds;
+    private final long maxLifetimeNanos;
+    private final long idleTimeoutNanos;
+    private final long leakDetectionThresholdNanos;
+
+    // Used as a stack, most recently returned first
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private final Semaphore permits;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed = false;
+
+    private ConnectionPool(Builder builder) {
+        this.dataSource = builder.dataSource;
+        this.maxSize = builder.maxSize;
+        this.connectionTimeoutNanos = builder.connectionTimeout.toNanos();
+        this.validationIntervalNanos = builder.validationInterval.toNanos();
+        this.validationTimeoutSeconds = (int) Math.max(1, builder.validationTimeout.toSeconds());
+        this.maxLifetimeNanos = builder.maxLifetime.toNanos();
+        this.idleTimeoutNanos = builder.idleTimeout.toNanos();
+        this.leakDetectionThresholdNanos = builder.leakDetectionThreshold.toNanos();
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("connection-pool-housekeeper").daemon().factory()
+        );
+        var interval = builder.housekeepingInterval.toNanos();
+        this.housekeeper.scheduleWithFixedDelay(this::houseKeep, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    public static Builder builder(DataSource dataSource) {
+        return new Builder(dataSource);
+    }
+
+    /**
+     * @return The most connections this pool will have open at once.
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of connections currently handed out.
+     */
+    public int active() {
+        return inUse.size();
+    }
+
+    /**
+     * @return The number of open connections waiting to be handed out.
+     */
+    public int idle() {
+        return idle.size();
+    }
+
+    /**
+     * @return The number of open connections, both active and idle.
+     */
+    public int total() {
+        return total.get();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("ConnectionPool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(connectionTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Timed out waiting for a connection after "
+                                + Duration.ofNanos(connectionTimeoutNanos)
+                                + " (active=" + active() + ", idle=" + idle() + ", total=" + total() + ")"
+                );
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a connection", e);
+        }
+
+        try {
+            var pooled = take();
+            pooled.checkedOutAt = System.nanoTime();
+            pooled.checkedOutBy = leakDetectionThresholdNanos > 0
+                    ? new Throwable("Connection taken from pool here")
+                    : null;
+            pooled.leakReported = false;
+            inUse.add(pooled);
+            return pooled.handOut();
+        } catch (Throwable t) {
+            permits.release();
+            throw t;
+        }
+    }
+
+    // Called while holding a permit
+    private PooledConnection take() throws SQLException {
+        while (true) {
+            var pooled = idle.pollFirst();
+            if (pooled != null) {
+                var now = System.nanoTime();
+                if (expired(pooled, now)) {
+                    discard(pooled);
+                    continue;
+                }
+                if (now - pooled.lastUsedAt > validationIntervalNanos && !isValid(pooled)) {
+                    discard(pooled);
+                    continue;
+                }
+                return pooled;
+            }
+
+            // A connection which was just returned can still be counted
+            // while it is on its way into the idle stack.
+            if (total.incrementAndGet() > maxSize) {
+                total.decrementAndGet();
+                Thread.onSpinWait();
+                continue;
+            }
+            try {
+                return new PooledConnection(dataSource.getConnection());
+            } catch (Throwable t) {
+                total.decrementAndGet();
+                throw t;
+            }
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private boolean expired(PooledConnection pooled, long now) {
+        return maxLifetimeNanos > 0 && now - pooled.createdAt > maxLifetimeNanos;
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        inUse.remove(pooled);
+        try {
+            if (closed || expired(pooled, System.nanoTime()) || !reset(pooled)) {
+                discard(pooled);
+            }
+            else {
+                pooled.lastUsedAt = System.nanoTime();
+                idle.offerFirst(pooled);
+                // The pool might have been closed while this was being returned
+                if (closed && idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Puts the connection back how it was when it was opened, returning false
+    // if that could not be done.
+    private boolean reset(PooledConnection pooled) {
+        var physical = pooled.physical;
+        var state = pooled.state;
+        try {
+            if (!state.getAutoCommit(physical)) {
+                physical.rollback();
+            }
+            state.setAutoCommit(physical, pooled.autoCommit);
+            state.setTransactionIsolation(physical, pooled.isolation);
+            state.setReadOnly(physical, pooled.readOnly);
+            physical.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            LOG.log(System.Logger.Level.DEBUG, "Could not reset connection, closing it", e);
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LOG.log(System.Logger.Level.DEBUG, "Failed to close connection", e);
+        }
+    }
+
+    private void houseKeep() {
+        try {
+            var now = System.nanoTime();
+            for (var pooled : idle) {
+                if ((expired(pooled, now)
+                        || (idleTimeoutNanos > 0 && now - pooled.lastUsedAt > idleTimeoutNanos))
+                        && idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+
+            if (leakDetectionThresholdNanos > 0) {
+                for (var pooled : inUse) {
+                    if (!pooled.leakReported && now - pooled.checkedOutAt > leakDetectionThresholdNanos) {
+                        pooled.leakReported = true;
+                        LOG.log(
+                                System.Logger.Level.WARNING,
+                                "Connection held for longer than "
+                                        + Duration.ofNanos(leakDetectionThresholdNanos)
+                                        + ", it may have leaked",
+                                pooled.checkedOutBy
+                        );
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            LOG.log(System.Logger.Level.WARNING, "Connection pool housekeeping failed", t);
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops handing out new ones. Connections which are
+     * currently handed out are closed once they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("ConnectionPool only gives out connections for one user");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    private final class PooledConnection {
+        final Connection physical;
+        // Shared by every handle to this connection, so it outlives each checkout
+        final ConnectionState state = new ConnectionState();
+        final long createdAt;
+        final boolean autoCommit;
+        final int isolation;
+        final boolean readOnly;
+        volatile long lastUsedAt;
+        volatile long checkedOutAt;
+        volatile Throwable checkedOutBy;
+        volatile boolean leakReported;
+
+        PooledConnection(Connection physical) throws SQLException {
+            this.physical = physical;
+            this.createdAt = System.nanoTime();
+            this.lastUsedAt = createdAt;
+            try {
+                this.autoCommit = state.getAutoCommit(physical);
+                this.isolation = state.getTransactionIsolation(physical);
+                this.readOnly = state.isReadOnly(physical);
+            } catch (Throwable t) {
+                try {
+                    physical.close();
+                } catch (Throwable closeFailed) {
+                    t.addSuppressed(closeFailed);
+                }
+                throw t;
+            }
+        }
+
+        Connection handOut() {
+            return new Handle(this);
+        }
+    }
+
+    /// What callers get from {@link #getConnection()}. Once closed, it closes any
+    /// statements made through it, gives the connection back and stops working.
+    private final class Handle extends DelegatingConnection {
+        private final PooledConnection pooled;
+        private final AtomicBoolean returned = new AtomicBoolean(false);
+        private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+        Handle(PooledConnection pooled) {
+            super(pooled.physical);
+            this.pooled = pooled;
+        }
+
+        @Override
+        Connection delegate() throws SQLException {
+            if (returned.get()) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            return connection;
+        }
+
+        @Override
+        public void close() {
+            // Closing from two threads at once must only give it back once
+            if (returned.compareAndSet(false, true)) {
+                closeStatements();
+                giveBack(pooled);
+            }
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+            return returned.get() || connection.isClosed();
+        }
+
+        @Override
+        public String toString() {
+            return "PooledConnection[" + connection + "]";
+        }
+
+        @Override
+        public boolean getAutoCommit() throws SQLException {
+            return pooled.state.getAutoCommit(delegate());
+        }
+
+        @Override
+        public void setAutoCommit(boolean autoCommit) throws SQLException {
+            pooled.state.setAutoCommit(delegate(), autoCommit);
+        }
+
+        @Override
+        public int getTransactionIsolation() throws SQLException {
+            return pooled.state.getTransactionIsolation(delegate());
+        }
+
+        @Override
+        public void setTransactionIsolation(int level) throws SQLException {
+            pooled.state.setTransactionIsolation(delegate(), level);
+        }
+
+        @Override
+        public boolean isReadOnly() throws SQLException {
+            return pooled.state.isReadOnly(delegate());
+        }
+
+        @Override
+        public void setReadOnly(boolean readOnly) throws SQLException {
+            pooled.state.setReadOnly(delegate(), readOnly);
+        }
+
+        // So the statement can be closed when the connection is returned, and so
+        // getConnection gives back this handle instead of the physical connection.
+        private Statement track(Statement statement) {
+            var handle = new StatementHandle<>(statement, this, statements);
+            statements.add(handle);
+            return handle;
+        }
+
+        private PreparedStatement track(PreparedStatement statement) {
+            var handle = new PreparedStatementHandle<>(statement, this, statements);
+            statements.add(handle);
+            return handle;
+        }
+
+        private CallableStatement track(CallableStatement statement) {
+            var handle = new CallableStatementHandle(statement, this, statements);
+            statements.add(handle);
+            return handle;
+        }
+
+        @Override
+        public Statement createStatement() throws SQLException {
+            return track(delegate().createStatement());
+        }
+
+        @Override
+        public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
+            return track(delegate().createStatement(resultSetType, resultSetConcurrency));
+        }
+
+        @Override
+        public Statement createStatement(
+                int resultSetType,
+                int resultSetConcurrency,
+                int resultSetHoldability
+        ) throws SQLException {
+            return track(delegate().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            return track(delegate().prepareStatement(sql));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(
+                String sql,
+                int resultSetType,
+                int resultSetConcurrency
+        ) throws SQLException {
+            return track(delegate().prepareStatement(sql, resultSetType, resultSetConcurrency));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(
+                String sql,
+                int resultSetType,
+                int resultSetConcurrency,
+                int resultSetHoldability
+        ) throws SQLException {
+            return track(delegate().prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+            return track(delegate().prepareStatement(sql, autoGeneratedKeys));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
+            return track(delegate().prepareStatement(sql, columnIndexes));
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
+            return track(delegate().prepareStatement(sql, columnNames));
+        }
+
+        @Override
+        public CallableStatement prepareCall(String sql) throws SQLException {
+            return track(delegate().prepareCall(sql));
+        }
+
+        @Override
+        public CallableStatement prepareCall(
+                String sql,
+                int resultSetType,
+                int resultSetConcurrency
+        ) throws SQLException {
+            return track(delegate().prepareCall(sql, resultSetType, resultSetConcurrency));
+        }
+
+        @Override
+        public CallableStatement prepareCall(
+                String sql,
+                int resultSetType,
+                int resultSetConcurrency,
+                int resultSetHoldability
+        ) throws SQLException {
+            return track(delegate().prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability));
+        }
+
+        private void closeStatements() {
+            for (var statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    LOG.log(System.Logger.Level.DEBUG, "Failed to close statement", e);
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    public static final class Builder {
+        private final DataSource dataSource;
+        private int maxSize = 10;
+        private Duration connectionTimeout = Duration.ofSeconds(30);
+        private Duration validationInterval = Duration.ofMillis(500);
+        private Duration validationTimeout = Duration.ofSeconds(5);
+        private Duration maxLifetime = Duration.ofMinutes(30);
+        private Duration idleTimeout = Duration.ofMinutes(10);
+        private Duration leakDetectionThreshold = Duration.ZERO;
+        private Duration housekeepingInterval = Duration.ofSeconds(30);
+
+        private Builder(DataSource dataSource) {
+            this.dataSource = Objects.requireNonNull(dataSource);
+        }
+
+        private static Duration nonNegative(String name, Duration duration) {
+            if (duration.isNegative()) {
+                throw new IllegalArgumentException(name + " must not be negative: " + duration);
+            }
+            return duration;
+        }
+
+        /**
+         * @param maxSize The most connections to have open at once. 10 by default.
+         * @return This builder.
+         */
+        public Builder maxSize(int maxSize) {
+            if (maxSize < 1) {
+                throw new IllegalArgumentException("maxSize must be at least 1: " + maxSize);
+            }
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param connectionTimeout How long to wait for a connection before giving up. 30 seconds by default.
+         * @return This builder.
+         */
+        public Builder connectionTimeout(Duration connectionTimeout) {
+            this.connectionTimeout = nonNegative("connectionTimeout", connectionTimeout);
+            return this;
+        }
+
+        /**
+         * @param validationInterval How long a connection can sit idle before it is checked with
+         *                           {@link Connection#isValid(int)} when handed out. 500 milliseconds by default.
+         * @return This builder.
+         */
+        public Builder validationInterval(Duration validationInterval) {
+            this.validationInterval = nonNegative("validationInterval", validationInterval);
+            return this;
+        }
+
+        /**
+         * @param validationTimeout How long to wait for {@link Connection#isValid(int)}. 5 seconds by default.
+         * @return This builder.
+         */
+        public Builder validationTimeout(Duration validationTimeout) {
+            this.validationTimeout = nonNegative("validationTimeout", validationTimeout);
+            return this;
+        }
+
+        /**
+         * @param maxLifetime How long to keep a connection open in total, or zero to keep it
+         *                    open indefinitely. 30 minutes by default.
+         * @return This builder.
+         */
+        public Builder maxLifetime(Duration maxLifetime) {
+            this.maxLifetime = nonNegative("maxLifetime", maxLifetime);
+            return this;
+        }
+
+        /**
+         * @param idleTimeout How long to keep an unused connection open, or zero to keep it
+         *                    open indefinitely. 10 minutes by default.
+         * @return This builder.
+         */
+        public Builder idleTimeout(Duration idleTimeout) {
+            this.idleTimeout = nonNegative("idleTimeout", idleTimeout);
+            return this;
+        }
+
+        /**
+         * @param leakDetectionThreshold How long a connection can be held before a warning is logged,
+         *                               or zero to not check. Zero by default.
+         * @return This builder.
+         */
+        public Builder leakDetectionThreshold(Duration leakDetectionThreshold) {
+            this.leakDetectionThreshold = nonNegative("leakDetectionThreshold", leakDetectionThreshold);
+            return this;
+        }
+
+        /**
+         * @param housekeepingInterval How often to close expired and idle connections and to check
+         *                             for leaks. 30 seconds by default.
+         * @return This builder.
+         */
+        public Builder housekeepingInterval(Duration housekeepingInterval) {
+            if (housekeepingInterval.isNegative() || housekeepingInterval.isZero()) {
+                throw new IllegalArgumentException(
+                        "housekeepingInterval must be positive: " + housekeepingInterval
+                );
+            }
+            this.housekeepingInterval = housekeepingInterval;
+            return this;
+        }
+
+        public ConnectionPool build() {
+            return new ConnectionPool(this);
+        }
+    }
+}
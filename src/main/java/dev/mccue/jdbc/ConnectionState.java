@@ -0,0 +1,63 @@
+package dev.mccue.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/// The auto-commit mode, transaction isolation level and read-only flag of a connection,
+/// as last read or set through this. Until then, or after setting one fails, that value
+/// is read from the connection again.
+///
+/// Kept apart from any wrapper so that {@link StateTrackingConnection} and the connections
+/// handed out by {@link ConnectionPool} can share it. Like most connections, it is not safe
+/// to use from multiple threads at once.
+final class ConnectionState {
+    private Boolean autoCommit;
+    private Integer isolation;
+    private Boolean readOnly;
+
+    boolean getAutoCommit(Connection connection) throws SQLException {
+        if (autoCommit == null) {
+            autoCommit = connection.getAutoCommit();
+        }
+        return autoCommit;
+    }
+
+    void setAutoCommit(Connection connection, boolean value) throws SQLException {
+        if (autoCommit == null || autoCommit != value) {
+            // If the driver throws, the state is unknown until read again
+            autoCommit = null;
+            connection.setAutoCommit(value);
+            autoCommit = value;
+        }
+    }
+
+    int getTransactionIsolation(Connection connection) throws SQLException {
+        if (isolation == null) {
+            isolation = connection.getTransactionIsolation();
+        }
+        return isolation;
+    }
+
+    void setTransactionIsolation(Connection connection, int value) throws SQLException {
+        if (isolation == null || isolation != value) {
+            isolation = null;
+            connection.setTransactionIsolation(value);
+            isolation = value;
+        }
+    }
+
+    boolean isReadOnly(Connection connection) throws SQLException {
+        if (readOnly == null) {
+            readOnly = connection.isReadOnly();
+        }
+        return readOnly;
+    }
+
+    void setReadOnly(Connection connection, boolean value) throws SQLException {
+        if (readOnly == null || readOnly != value) {
+            readOnly = null;
+            connection.setReadOnly(value);
+            readOnly = value;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package dev.mccue.jdbc;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashSet;
-import java.util.Set;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
 
 public final class Connections {
     private Connections() {}
@@ -21,6 +23,31 @@ public final class Connections {
         }
     }
 
+    /**
+     * Wraps a connection so that its auto-commit mode, transaction isolation level and
+     * read-only flag are remembered after they are first read or set.
+     *
+     * <p>
+     *     {@link Connection#getAutoCommit()}, {@link Connection#getTransactionIsolation()} and
+     *     {@link Connection#isReadOnly()} are answered from what was last seen, and setting any of
+     *     them to the value it already has does nothing. On drivers where each of these is a
+     *     round trip to the database, this saves several round trips for every transaction run
+     *     with {@link Connections#transact(Connection, TransactionOptions, SQLFunction)}.
+     * </p>
+     *
+     * <p>
+     *     Changes made some other way, like by running {@code SET TRANSACTION ISOLATION LEVEL}
+     *     directly, will not be seen by the wrapper. {@link Connection#unwrap(Class)} gives
+     *     back the wrapped connection.
+     * </p>
+     *
+     * @param connection The connection to wrap.
+     * @return A {@link Connection} which should be used in place of the one given.
+     */
+    public static Connection trackState(Connection connection) {
+        return StateTrackingConnection.wrap(connection);
+    }
+
     static <V> V inTransaction(
             Connection connection,
             TransactionOptions options,
@@ -30,22 +57,31 @@ public final class Connections {
         var readOnly = options.readOnly;
         var rollbackOnly = options.rollbackOnly;
         var oldAutoCommit = connection.getAutoCommit();
-        var oldIsolation = connection.getTransactionIsolation();
-        var oldReadOnly = connection.isReadOnly();
         var restoreAutoCommit = true;
 
+        // Only touch the isolation level and read-only flag when they need to
+        // change, since on many drivers each call is a round trip.
+        var oldIsolation = -1;
         if (isolation != null) {
-            connection.setTransactionIsolation(isolation);
+            var currentIsolation = connection.getTransactionIsolation();
+            if (currentIsolation != isolation) {
+                connection.setTransactionIsolation(isolation);
+                oldIsolation = currentIsolation;
+            }
         }
-        if (readOnly != null && readOnly) {
+        var restoreReadOnly = false;
+        if (readOnly != null && readOnly && !connection.isReadOnly()) {
             connection.setReadOnly(true);
+            restoreReadOnly = true;
         }
 
-        connection.setAutoCommit(false);
+        if (oldAutoCommit) {
+            connection.setAutoCommit(false);
+        }
 
         try {
             var result = f.apply(connection);
-            if (rollbackOnly) {
+            if (rollbackOnly != null && rollbackOnly) {
                 restoreAutoCommit = false;
                 connection.rollback();
                 restoreAutoCommit = true;
@@ -68,35 +104,237 @@ public final class Connections {
             throw t;
         }
         finally {
-            if (restoreAutoCommit) {
+            if (restoreAutoCommit && oldAutoCommit) {
                 try {
-                    connection.setAutoCommit(oldAutoCommit);
+                    connection.setAutoCommit(true);
                 } catch (Exception ignored) {}
             }
-            if (isolation != null) {
+            if (oldIsolation != -1) {
                 try {
                     connection.setTransactionIsolation(oldIsolation);
                 } catch (Exception ignored) {}
             }
-            if (readOnly != null && readOnly) {
+            if (restoreReadOnly) {
                 try {
-                    connection.setReadOnly(oldReadOnly);
+                    connection.setReadOnly(false);
                 } catch (Exception ignored) {}
             }
         }
     }
 
-    private enum NestedTransactions {
-        ALLOW,
-        IGNORE,
-        PROHIBIT
+    static <T> T runInTransaction(
+            Connection connection,
+            Connection raw,
+            DataSource dataSource,
+            TransactionContext context,
+            TransactionOptions options,
+            SQLFunction<? super Connection, ? extends T> bodyFunction
+    ) throws SQLException {
+        var depth = context.push(
+                raw,
+                connection,
+                dataSource,
+                options.readOnly != null && options.readOnly
+        );
+        var nestedTransactions = context.nestedTransactions;
+        if (options.nestedTransactions != null) {
+            context.nestedTransactions = options.nestedTransactions;
+        }
+        var committed = false;
+        try {
+            var result = inTransaction(connection, options, bodyFunction);
+            committed = options.rollbackOnly == null || !options.rollbackOnly;
+            return result;
+        } finally {
+            context.nestedTransactions = nestedTransactions;
+            var hooks = context.hooksAt(depth);
+            context.popTo(depth);
+            // Run by the caller once it has let go of the connection
+            if (hooks != null) {
+                hooks.end(committed, options.hookExecutor);
+                context.ended(hooks);
+            }
+        }
     }
 
-    private static final ThreadLocal<NestedTransactions> NESTED_TRANSACTIONS
-            = ThreadLocal.withInitial(() -> NestedTransactions.PROHIBIT);
+    static <V> V inSavepoint(
+            Connection connection,
+            Connection raw,
+            TransactionContext context,
+            TransactionOptions options,
+            SQLFunction<? super Connection, ? extends V> f
+    ) throws SQLException {
+        var nestedTransactions = context.nestedTransactions;
+        if (options.nestedTransactions != null) {
+            context.nestedTransactions = options.nestedTransactions;
+        }
+        // Hooks registered inside the savepoint are dropped if it is rolled back
+        var hooks = context.hooksFor(raw, false);
+        var afterCommitMark = hooks == null ? 0 : hooks.afterCommitMark();
+        var afterRollbackMark = hooks == null ? 0 : hooks.afterRollbackMark();
+        try {
+            var savepoint = connection.setSavepoint();
+            try {
+                var result = f.apply(connection);
+                if (options.rollbackOnly != null && options.rollbackOnly) {
+                    connection.rollback(savepoint);
+                    rollbackHooksTo(context, raw, afterCommitMark, afterRollbackMark);
+                }
+                else {
+                    try {
+                        connection.releaseSavepoint(savepoint);
+                    } catch (SQLFeatureNotSupportedException ignored) {
+                        // The savepoint is released when the outer transaction ends
+                    }
+                }
+                return result;
+            }
+            catch (Throwable t) {
+                try {
+                    connection.rollback(savepoint);
+                } catch (Throwable rb) {
+                    throw new RollbackFailedException(
+                            rb, t
+                    );
+                }
+                rollbackHooksTo(context, raw, afterCommitMark, afterRollbackMark);
+                throw t;
+            }
+        } finally {
+            context.nestedTransactions = nestedTransactions;
+        }
+    }
 
-    static final ThreadLocal<Set<Connection>> ACTIVE_TRANSACTION
-            = ThreadLocal.withInitial(Set::of);
+    private static void rollbackHooksTo(
+            TransactionContext context,
+            Connection raw,
+            int afterCommitMark,
+            int afterRollbackMark
+    ) {
+        var hooks = context.hooksFor(raw, false);
+        if (hooks != null) {
+            hooks.rollbackTo(afterCommitMark, afterRollbackMark);
+        }
+    }
+
+    /**
+     * Registers a hook to run once the transaction currently open on the connection commits.
+     *
+     * <p>
+     *     Hooks belong to the innermost transaction started on this thread with
+     *     {@link Connections#transact(Connection, TransactionOptions, SQLFunction)} or
+     *     {@link DataSources#transact(DataSource, TransactionOptions, SQLFunction)}. Nested calls which
+     *     do not start their own transaction, like with {@link NestedTransactions#IGNORE} or
+     *     {@link NestedTransactions#SAVEPOINT}, add to the hooks of the transaction around them. If a
+     *     savepoint is rolled back, hooks registered with this method inside of it are dropped.
+     * </p>
+     *
+     * <p>
+     *     Hooks run in the order they were registered and at most once. They run after the transaction
+     *     has ended and its connection has been let go: for {@link DataSources}, once the connection has
+     *     been closed, and for a connection given to {@code transact}, once it is unlocked for other threads.
+     *     A connection of an outer transaction this one was nested in is still held. Unless
+     *     {@link TransactionOptions.Builder#hookExecutor(java.util.concurrent.Executor)} was set they run on
+     *     the thread which ran the transaction, before {@code transact} returns. A hook which throws is
+     *     logged and does not stop the hooks after it.
+     * </p>
+     *
+     * @param connection The connection the transaction is open on.
+     * @param hook The hook to run.
+     * @throws IllegalStateException If no transaction is open on the connection.
+     */
+    public static void afterCommit(Connection connection, Runnable hook) {
+        Objects.requireNonNull(hook);
+        TransactionContext.current()
+                .hooksFor(rawConnection(connection), true)
+                .afterCommit(hook);
+    }
+
+    /**
+     * Registers a hook to run once the transaction currently open on the connection is rolled back.
+     *
+     * <p>
+     *     Hooks are run the same as with {@link Connections#afterCommit(Connection, Runnable)}. If a
+     *     savepoint is rolled back, hooks registered with this method inside of it will run when the
+     *     transaction ends, whether it commits or not.
+     * </p>
+     *
+     * @param connection The connection the transaction is open on.
+     * @param hook The hook to run.
+     * @throws IllegalStateException If no transaction is open on the connection.
+     */
+    public static void afterRollback(Connection connection, Runnable hook) {
+        Objects.requireNonNull(hook);
+        TransactionContext.current()
+                .hooksFor(rawConnection(connection), true)
+                .afterRollback(hook);
+    }
+
+    /**
+     * Wraps a task so that, wherever it runs, it sees the transactions open on this thread right now.
+     *
+     * <p>
+     *     Transactions are tracked per thread, so a task forked onto another thread, like a subtask of a
+     *     {@code StructuredTaskScope}, does not know about the transactions its parent has open. Inside a
+     *     wrapped task, {@link DataSources#transact(DataSource, TransactionOptions, SQLFunction)} on a data
+     *     source the parent has a transaction open on finds that transaction, the nesting mode is the
+     *     parent's, and hooks registered with {@link Connections#afterCommit(Connection, Runnable)} run when
+     *     the parent's transaction ends.
+     * </p>
+     *
+     * <p>
+     *     Since the parent's connection is shared, an inherited transaction can only be joined with
+     *     {@link NestedTransactions#IGNORE}. Any other mode throws, and
+     *     {@link TransactionOptions.Builder#requiresNew(boolean)} gets a connection of its own. The driver
+     *     must allow the connection to be used from the task's thread, and the task must finish before the
+     *     parent's transaction ends.
+     * </p>
+     *
+     * <pre>{@code
+     * DataSources.transact(db, options, conn -> {
+     *     try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+     *         var widgets = scope.fork(Connections.inheritTransactions(() -> listWidgets(db)));
+     *         var orders = scope.fork(Connections.inheritTransactions(() -> listOrders(db)));
+     *         scope.join().throwIfFailed();
+     *         return new Page(widgets.get(), orders.get());
+     *     }
+     * });
+     * }</pre>
+     *
+     * @param task The task to wrap.
+     * @return A {@link Callable} which runs the task.
+     * @param <T> The type of result.
+     */
+    public static <T> Callable<T> inheritTransactions(Callable<? extends T> task) {
+        Objects.requireNonNull(task);
+        var parent = TransactionContext.current();
+        return () -> TransactionContext.runInherited(parent, task::call);
+    }
+
+    /**
+     * Wraps a task so that, wherever it runs, it sees the transactions open on this thread right now.
+     *
+     * @see Connections#inheritTransactions(Callable)
+     * @param task The task to wrap.
+     * @return A {@link Runnable} which runs the task.
+     */
+    public static Runnable inheritTransactions(Runnable task) {
+        Objects.requireNonNull(task);
+        var parent = TransactionContext.current();
+        return () -> {
+            try {
+                TransactionContext.runInherited(parent, () -> {
+                    task.run();
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // Only a Callable can throw checked exceptions
+                throw new AssertionError(e);
+            }
+        };
+    }
 
     public static <T> T transact(
             Connection connection,
@@ -104,32 +342,42 @@ public final class Connections {
             SQLFunction<? super Connection, ? extends T> bodyFunction
     ) throws SQLException {
         var raw = rawConnection(connection);
-        var activeTx = ACTIVE_TRANSACTION.get();
-        var nestedTransactions = NESTED_TRANSACTIONS.get();
-
-        var runBody = (SQLSupplier<T>) () -> {
-            Set<Connection> newActiveTx = new HashSet<>(activeTx);
-            newActiveTx.add(connection);
-            newActiveTx = Set.copyOf(newActiveTx);
-            ACTIVE_TRANSACTION.set(newActiveTx);
-            try {
-                return inTransaction(connection, options, bodyFunction);
-            } finally {
-                ACTIVE_TRANSACTION.set(activeTx);
+        var context = TransactionContext.current();
+        var nestedTransactions = options.nestedTransactions == null
+                ? context.nestedTransactions
+                : options.nestedTransactions;
+
+        if (context.inherited(raw)) {
+            // The connection is in use by the thread which opened the transaction,
+            // so nothing but running the body in that transaction is safe.
+            if (nestedTransactions == NestedTransactions.IGNORE) {
+                return bodyFunction.apply(connection);
             }
-        };
-        if (
+            throw new NestedTransactionException(
+                    "The transaction on this connection was inherited from another thread, "
+                            + "so it can only be joined with NestedTransactions.IGNORE"
+            );
+        }
+        else if (
                 nestedTransactions == NestedTransactions.IGNORE &&
-                !activeTx.contains(raw)
+                !context.contains(raw)
         ) {
-            return runBody.get();
+            try {
+                return runInTransaction(connection, raw, null, context, options, bodyFunction);
+            } finally {
+                context.runEndedHooks();
+            }
         }
         else if (
                 nestedTransactions == NestedTransactions.ALLOW ||
-                !activeTx.contains(raw)
+                !context.contains(raw)
         ) {
-            synchronized (connection) {
-                return runBody.get();
+            var lock = ConnectionLocks.lock(raw);
+            try {
+                return runInTransaction(connection, raw, null, context, options, bodyFunction);
+            } finally {
+                lock.unlock();
+                context.runEndedHooks();
             }
         }
         else if (
@@ -137,6 +385,16 @@ public final class Connections {
         ) {
             return bodyFunction.apply(connection);
         }
+        else if (
+                nestedTransactions == NestedTransactions.SAVEPOINT
+        ) {
+            var lock = ConnectionLocks.lock(raw);
+            try {
+                return inSavepoint(connection, raw, context, options, bodyFunction);
+            } finally {
+                lock.unlock();
+            }
+        }
         else /* nestedTransactions == NestedTransactions.PROHIBIT */ {
             throw new NestedTransactionException("Nested transactions are prohibited");
         }
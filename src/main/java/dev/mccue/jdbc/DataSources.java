@@ -2,30 +2,148 @@ package dev.mccue.jdbc;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
+import java.io.Serial;
 import java.sql.SQLException;
-import java.util.HashSet;
-import java.util.Set;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.UnaryOperator;
 
 public final class DataSources {
     private DataSources() {}
 
+    // Only held to look up or resize a limit, never while waiting on one
+    private static final Map<DataSource, ConcurrencyLimit> CONCURRENCY_LIMITS = new WeakHashMap<>();
+
+    /// A semaphore whose number of permits can be changed while some are held.
+    private static final class ConcurrencyLimit extends Semaphore {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private int max;
+
+        ConcurrencyLimit(int max) {
+            super(max, true);
+            this.max = max;
+        }
+
+        // Called while holding CONCURRENCY_LIMITS
+        void resize(int max) {
+            if (max > this.max) {
+                release(max - this.max);
+            }
+            else if (max < this.max) {
+                // Can go negative, so new transactions wait until enough running ones finish
+                reducePermits(this.max - max);
+            }
+            this.max = max;
+        }
+    }
+
     public static <T> T transact(
             DataSource dataSource,
             TransactionOptions options,
             SQLFunction<? super Connection, ? extends T> bodyFunction
     ) throws SQLException {
-        try (var connection = dataSource.getConnection()) {
-            var raw = Connections.rawConnection(connection);
-            var activeTx = Connections.ACTIVE_TRANSACTION.get();
-            Set<Connection> newActiveTx = new HashSet<>(activeTx);
-            newActiveTx.add(raw);
-            newActiveTx = Set.copyOf(newActiveTx);
-            Connections.ACTIVE_TRANSACTION.set(newActiveTx);
+        return transact(dataSource, options, UnaryOperator.identity(), bodyFunction);
+    }
+
+    // wrapConnection is applied to a new connection before it is given to the body
+    // or to any transaction nested in it
+    private static <T> T transact(
+            DataSource dataSource,
+            TransactionOptions options,
+            UnaryOperator<Connection> wrapConnection,
+            SQLFunction<? super Connection, ? extends T> bodyFunction
+    ) throws SQLException {
+        if (options.requiresNew == null || !options.requiresNew) {
+            var context = TransactionContext.current();
+            var active = context.connectionFor(dataSource);
+            if (active != null) {
+                if (dataSource instanceof RoutingDataSource
+                        && context.readOnlyFor(dataSource)
+                        && (options.readOnly == null || !options.readOnly)) {
+                    // The outer transaction may be on a replica, and even if not its
+                    // connection is read-only and would not be recorded as a write
+                    throw new NestedTransactionException(
+                            "A transaction which is not read-only cannot be nested in a read-only transaction "
+                                    + "on a RoutingDataSource. Use requiresNew to run it on the primary."
+                    );
+                }
+                // Nested in a transaction on the same data source, so reuse its
+                // connection. Whether that is allowed is up to the nesting mode.
+                return Connections.transact(active, options, bodyFunction);
+            }
+        }
+
+        var retryPolicy = options.retryPolicy;
+        for (int attempt = 1; ; attempt++) {
+            var start = retryPolicy == null ? 0 : System.nanoTime();
             try {
-                return Connections.inTransaction(connection, options, bodyFunction);
+                return transactOnce(dataSource, options, wrapConnection, bodyFunction);
+            } catch (Throwable t) {
+                if (retryPolicy == null
+                        || attempt >= retryPolicy.maxAttempts()
+                        || !retryPolicy.isRetryable(t)) {
+                    throw t;
+                }
+                var backoff = retryPolicy.backoffNanos(attempt);
+                try {
+                    Thread.sleep(Duration.ofNanos(backoff));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    t.addSuppressed(e);
+                    throw t;
+                }
+                TransactionMetrics.recordRetry(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static <T> T transactOnce(
+            DataSource dataSource,
+            TransactionOptions options,
+            UnaryOperator<Connection> wrapConnection,
+            SQLFunction<? super Connection, ? extends T> bodyFunction
+    ) throws SQLException {
+        var context = TransactionContext.current();
+        if (!(dataSource instanceof RoutingDataSource routing)) {
+            try {
+                try (var connection = dataSource.getConnection()) {
+                    return Connections.runInTransaction(
+                            wrapConnection.apply(connection),
+                            Connections.rawConnection(connection),
+                            dataSource,
+                            context,
+                            options,
+                            bodyFunction
+                    );
+                }
             } finally {
-                Connections.ACTIVE_TRANSACTION.set(activeTx);
+                context.runEndedHooks();
+            }
+        }
+
+        var target = routing.select(options.readOnly);
+        try (var connection = target.dataSource.getConnection()) {
+            var result = Connections.runInTransaction(
+                    wrapConnection.apply(connection),
+                    Connections.rawConnection(connection),
+                    dataSource,
+                    context,
+                    options,
+                    bodyFunction
+            );
+            if (options.readOnly == null || !options.readOnly) {
+                routing.recordWrite();
             }
+            return result;
+        } finally {
+            target.release();
+            context.runEndedHooks();
         }
     }
 
@@ -58,4 +176,140 @@ public final class DataSources {
         );
     }
 
+    /**
+     * Sets the most transactions started with {@code transactAsync} which can run on the
+     * data source at once. Any more wait, without holding a thread or a connection, until
+     * one finishes.
+     *
+     * <p>
+     *     A {@link ConnectionPool} is limited to its {@link ConnectionPool#maxSize()} unless
+     *     set otherwise. Other data sources are not limited unless set.
+     * </p>
+     *
+     * <p>
+     *     The limit can be changed while transactions are running. If it is lowered, new
+     *     transactions wait until enough of the running ones finish to be under the new limit.
+     * </p>
+     *
+     * @param dataSource The data source.
+     * @param maxConcurrent The most transactions to run at once.
+     */
+    public static void limitConcurrency(DataSource dataSource, int maxConcurrent) {
+        Objects.requireNonNull(dataSource);
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1: " + maxConcurrent);
+        }
+        synchronized (CONCURRENCY_LIMITS) {
+            // Resized in place, since transactions already waiting hold on to it
+            var limit = CONCURRENCY_LIMITS.get(dataSource);
+            if (limit == null) {
+                CONCURRENCY_LIMITS.put(dataSource, new ConcurrencyLimit(maxConcurrent));
+            }
+            else {
+                limit.resize(maxConcurrent);
+            }
+        }
+    }
+
+    private static Semaphore concurrencyLimit(DataSource dataSource) {
+        synchronized (CONCURRENCY_LIMITS) {
+            var limit = CONCURRENCY_LIMITS.get(dataSource);
+            if (limit == null && dataSource instanceof ConnectionPool pool) {
+                limit = new ConcurrencyLimit(pool.maxSize());
+                CONCURRENCY_LIMITS.put(dataSource, limit);
+            }
+            return limit;
+        }
+    }
+
+    /**
+     * Runs a transaction on a new virtual thread.
+     *
+     * <p>
+     *     The transaction runs the same as with
+     *     {@link DataSources#transact(DataSource, TransactionOptions, SQLFunction)}, but first waits
+     *     for room under the data source's {@link DataSources#limitConcurrency(DataSource, int) concurrency limit}.
+     *     Many queries can be started at once and combined with the methods on {@link CompletableFuture}.
+     * </p>
+     *
+     * <pre>{@code
+     * var widgets = DataSources.transactAsync(db, conn -> listWidgets(conn));
+     * var orders = DataSources.transactAsync(db, conn -> listOrders(conn));
+     * var page = widgets.thenCombine(orders, Page::new).join();
+     * }</pre>
+     *
+     * <p>
+     *     Cancelling the future interrupts the thread and cancels any statement made from the
+     *     connection given to the body, after which the transaction is rolled back.
+     * </p>
+     *
+     * @param dataSource The data source to get a connection from.
+     * @param options The options for the transaction.
+     * @param bodyFunction The body of the transaction.
+     * @return A future which completes with the result of the body once the transaction commits.
+     * @param <T> The type of result.
+     */
+    public static <T> CompletableFuture<T> transactAsync(
+            DataSource dataSource,
+            TransactionOptions options,
+            SQLFunction<? super Connection, ? extends T> bodyFunction
+    ) {
+        Objects.requireNonNull(dataSource);
+        Objects.requireNonNull(options);
+        Objects.requireNonNull(bodyFunction);
+        var future = new AsyncTransaction<T>();
+        var limit = concurrencyLimit(dataSource);
+        var thread = Thread.ofVirtual().name("transact-async").unstarted(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                if (limit != null) {
+                    limit.acquire();
+                }
+                try {
+                    future.complete(transact(dataSource, options, future::track, bodyFunction));
+                } finally {
+                    if (limit != null) {
+                        limit.release();
+                    }
+                }
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.runOn(thread);
+        thread.start();
+        return future;
+    }
+
+    public static CompletableFuture<Void> transactAsync(
+            DataSource dataSource,
+            TransactionOptions options,
+            SQLConsumer<? super Connection> bodyFunction
+    ) {
+        return transactAsync(dataSource, options, (SQLFunction<? super Connection, Void>) (c) -> { bodyFunction.accept(c); return null; });
+    }
+
+    public static <T> CompletableFuture<T> transactAsync(
+            DataSource dataSource,
+            SQLFunction<? super Connection, ? extends T> bodyFunction
+    ) {
+        return transactAsync(
+                dataSource,
+                TransactionOptions.DEFAULT,
+                bodyFunction
+        );
+    }
+
+    public static CompletableFuture<Void> transactAsync(
+            DataSource dataSource,
+            SQLConsumer<? super Connection> bodyFunction
+    ) {
+        return transactAsync(
+                dataSource,
+                TransactionOptions.DEFAULT,
+                bodyFunction
+        );
+    }
 }
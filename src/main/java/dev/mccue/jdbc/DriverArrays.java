@@ -0,0 +1,79 @@
+package dev.mccue.jdbc;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/// Creates {@link Array}s from primitive arrays.
+///
+/// {@link Connection#createArrayOf(String, Object[])} only takes an `Object[]`,
+/// so a `long[]` has to be boxed element by element before it can be passed.
+/// Some drivers, like PostgreSQL's, also have a public `createArrayOf(String, Object)`
+/// on their connection class which accepts primitive arrays directly. When the
+/// connection has one it is used instead.
+final class DriverArrays {
+    private DriverArrays() {}
+
+    private static final MethodType CREATE_ARRAY_OF =
+            MethodType.methodType(Array.class, String.class, Object.class);
+
+    // null when the connection class has no primitive overload
+    private static final ClassValue<MethodHandle> PRIMITIVE_CREATE_ARRAY_OF = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            try {
+                return MethodHandles.publicLookup()
+                        .findVirtual(type, "createArrayOf", CREATE_ARRAY_OF)
+                        .asType(MethodType.methodType(Array.class, Connection.class, String.class, Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+    };
+
+    static Array createArrayOf(Connection connection, String typeName, long[] elements) throws SQLException {
+        var array = createPrimitiveArrayOf(connection, typeName, elements);
+        if (array != null) {
+            return array;
+        }
+        var boxed = new Object[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            boxed[i] = elements[i];
+        }
+        return connection.createArrayOf(typeName, boxed);
+    }
+
+    static Array createArrayOf(Connection connection, String typeName, int[] elements) throws SQLException {
+        var array = createPrimitiveArrayOf(connection, typeName, elements);
+        if (array != null) {
+            return array;
+        }
+        var boxed = new Object[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            boxed[i] = elements[i];
+        }
+        return connection.createArrayOf(typeName, boxed);
+    }
+
+    private static Array createPrimitiveArrayOf(
+            Connection connection,
+            String typeName,
+            Object elements
+    ) throws SQLException {
+        var raw = Connections.rawConnection(connection);
+        var handle = PRIMITIVE_CREATE_ARRAY_OF.get(raw.getClass());
+        if (handle == null) {
+            return null;
+        }
+        try {
+            return (Array) handle.invokeExact(raw, typeName, elements);
+        } catch (SQLException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new SQLException(e);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package dev.mccue.jdbc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs many small transactions together as one, so that they share a single commit.
+ *
+ * <p>
+ *     When each commit has to wait for the database to flush to disk, many threads each
+ *     running a tiny transaction spend most of their time waiting on flushes. A {@link GroupCommitter}
+ *     gathers the bodies submitted to it, either until it has {@code maxBatchSize} of them or until
+ *     {@code maxDelay} has passed since the first, then runs them one after the other in a single
+ *     transaction on a background thread.
+ * </p>
+ *
+ * <p>
+ *     Each body runs under its own savepoint. If a body fails, only its savepoint is rolled back
+ *     and its future completes with the exception. The futures of the other bodies complete once
+ *     the shared transaction has committed, or complete with the exception if it fails.
+ * </p>
+ *
+ * <pre>{@code
+ * try (var committer = GroupCommitter.builder(db).maxDelay(Duration.ofMillis(2)).build()) {
+ *     CompletableFuture<Void> inserted = committer.submit(conn -> {
+ *         try (var stmt = conn.prepareStatement("INSERT INTO event(name) VALUES (?)")) {
+ *             stmt.setString(1, name);
+ *             stmt.execute();
+ *         }
+ *     });
+ *     inserted.join();
+ * }
+ * }</pre>
+ *
+ * <p>
+ *     Bodies run on the background thread, not the thread which submitted them, so they should
+ *     only use the connection they are given. Since they share a transaction, they also see each
+ *     other's changes and hold their locks until the shared commit.
+ * </p>
+ */
+public final class GroupCommitter implements AutoCloseable {
+    private final DataSource dataSource;
+    private final TransactionOptions options;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Submission<?>> queue;
+    private final Thread thread;
+    // Held to check closed and add to the queue in one step, so nothing
+    // can be added after CLOSE
+    private final ReentrantLock lock;
+    private boolean closed;
+
+    private record Submission<T>(
+            SQLFunction<? super Connection, ? extends T> body,
+            CompletableFuture<T> future
+    ) {}
+
+    // Put on the queue to wake up the background thread when closing
+    private static final Submission<?> CLOSE = new Submission<>(null, null);
+
+    private GroupCommitter(Builder builder) {
+        this.dataSource = builder.dataSource;
+        this.options = builder.options;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.maxDelayNanos = builder.maxDelay.toNanos();
+        this.queue = new LinkedBlockingQueue<>();
+        this.lock = new ReentrantLock();
+        this.closed = false;
+        this.thread = builder.threadFactory.newThread(this::run);
+        this.thread.start();
+    }
+
+    public static Builder builder(DataSource dataSource) {
+        return new Builder(dataSource);
+    }
+
+    /**
+     * Submits a body to run in the next shared transaction.
+     *
+     * @param body The body to run.
+     * @return A future which completes with the result of the body once the shared transaction commits.
+     * @param <T> The type of result.
+     * @throws IllegalStateException If this has been closed.
+     */
+    public <T> CompletableFuture<T> submit(SQLFunction<? super Connection, ? extends T> body) {
+        Objects.requireNonNull(body);
+        var future = new CompletableFuture<T>();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("GroupCommitter is closed");
+            }
+            queue.add(new Submission<>(body, future));
+        } finally {
+            lock.unlock();
+        }
+        return future;
+    }
+
+    /**
+     * Submits a body to run in the next shared transaction.
+     *
+     * @param body The body to run.
+     * @return A future which completes once the shared transaction commits.
+     * @throws IllegalStateException If this has been closed.
+     */
+    public CompletableFuture<Void> submit(SQLConsumer<? super Connection> body) {
+        Objects.requireNonNull(body);
+        return submit((SQLFunction<? super Connection, Void>) (c) -> { body.accept(c); return null; });
+    }
+
+    private void run() {
+        try {
+            runBatches();
+        } finally {
+            // However the loop ended, nothing more will be taken off the queue
+            lock.lock();
+            try {
+                closed = true;
+                Submission<?> leftover;
+                while ((leftover = queue.poll()) != null) {
+                    if (leftover != CLOSE) {
+                        leftover.future().completeExceptionally(new IllegalStateException("GroupCommitter is closed"));
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void runBatches() {
+        var batch = new ArrayList<Submission<?>>(maxBatchSize);
+        var closing = false;
+        while (!closing) {
+            try {
+                var first = queue.take();
+                if (first == CLOSE) {
+                    closing = true;
+                }
+                else {
+                    batch.add(first);
+                }
+                var deadline = System.nanoTime() + maxDelayNanos;
+                while (!closing && batch.size() < maxBatchSize) {
+                    var next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    else if (next == CLOSE) {
+                        closing = true;
+                    }
+                    else {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Stops the committer just like close, whoever interrupted it
+                closing = true;
+            }
+            if (!batch.isEmpty()) {
+                runBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void runBatch(List<Submission<?>> batch) {
+        var results = new Object[batch.size()];
+        var failures = new Throwable[batch.size()];
+        try {
+            DataSources.transact(dataSource, options, connection -> {
+                // The transaction may be retried, so forget what the last attempt did
+                Arrays.fill(results, null);
+                Arrays.fill(failures, null);
+                for (int i = 0; i < batch.size(); i++) {
+                    var savepoint = connection.setSavepoint();
+                    try {
+                        results[i] = batch.get(i).body().apply(connection);
+                        try {
+                            connection.releaseSavepoint(savepoint);
+                        } catch (SQLFeatureNotSupportedException ignored) {
+                            // The savepoint is released on commit
+                        }
+                    } catch (Throwable t) {
+                        failures[i] = t;
+                        try {
+                            connection.rollback(savepoint);
+                        } catch (Throwable rb) {
+                            throw new RollbackFailedException(rb, t);
+                        }
+                    }
+                }
+            });
+        } catch (Throwable t) {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().completeExceptionally(failures[i] != null ? failures[i] : t);
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), results[i], failures[i]);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void complete(Submission<T> submission, Object result, Throwable failure) {
+        if (failure != null) {
+            submission.future().completeExceptionally(failure);
+        }
+        else {
+            submission.future().complete((T) result);
+        }
+    }
+
+    /**
+     * Stops accepting new bodies and waits for the ones already submitted to finish.
+     *
+     * <p>
+     *     Interrupting the background thread also closes this. Bodies it had not yet taken
+     *     off the queue then complete with an {@link IllegalStateException}.
+     * </p>
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        } finally {
+            lock.unlock();
+        }
+        var interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static final class Builder {
+        private final DataSource dataSource;
+        private TransactionOptions options = TransactionOptions.DEFAULT;
+        private int maxBatchSize = 64;
+        private Duration maxDelay = Duration.ofMillis(1);
+        private ThreadFactory threadFactory = Thread.ofPlatform()
+                .name("group-committer-", 0)
+                .daemon()
+                .factory();
+
+        private Builder(DataSource dataSource) {
+            this.dataSource = Objects.requireNonNull(dataSource);
+        }
+
+        /**
+         * @param options The options for each shared transaction.
+         * @return This builder.
+         * @throws IllegalArgumentException If the options are rollback only, since then nothing would
+         *                                  ever be committed.
+         */
+        public Builder options(TransactionOptions options) {
+            Objects.requireNonNull(options);
+            if (options.rollbackOnly != null && options.rollbackOnly) {
+                throw new IllegalArgumentException("A GroupCommitter cannot use rollback only transactions");
+            }
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize The most bodies to run in one shared transaction.
+         * @return This builder.
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize < 1) {
+                throw new IllegalArgumentException("maxBatchSize must be at least 1: " + maxBatchSize);
+            }
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxDelay The most time to wait for more bodies after the first is submitted.
+         * @return This builder.
+         */
+        public Builder maxDelay(Duration maxDelay) {
+            if (maxDelay.isNegative()) {
+                throw new IllegalArgumentException("maxDelay must not be negative: " + maxDelay);
+            }
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * @param threadFactory Makes the thread which runs the shared transactions.
+         * @return This builder.
+         */
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = Objects.requireNonNull(threadFactory);
+            return this;
+        }
+
+        public GroupCommitter build() {
+            return new GroupCommitter(this);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package dev.mccue.jdbc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/// {@link InputStream}s over files and buffers of a known length, used to
+/// hand large objects to a driver without first copying them onto the heap.
+final class LobStreams {
+    private LobStreams() {}
+
+    /// Prefers the int length overload when the length fits, since it has
+    /// been around longer and more drivers implement it.
+    static void setBinaryStream(
+            PreparedStatement stmt,
+            int parameterIndex,
+            InputStream x,
+            long length
+    ) throws SQLException {
+        if (length <= Integer.MAX_VALUE) {
+            stmt.setBinaryStream(parameterIndex, x, (int) length);
+        }
+        else {
+            stmt.setBinaryStream(parameterIndex, x, length);
+        }
+    }
+
+    /// Reads the remaining bytes of the buffer without changing its position.
+    static InputStream of(ByteBuffer buffer) {
+        return new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    /// Reads a region of the channel with positional reads. The channel is
+    /// not closed and its position is not changed.
+    static InputStream of(FileChannel channel, long position, long length) {
+        return new ChannelInputStream(Objects.requireNonNull(channel), null, position, length);
+    }
+
+    /// Reads the first length bytes of the file, which is only opened on the
+    /// first read and is closed as soon as the last byte has been read.
+    static InputStream of(Path path, long length) {
+        return new ChannelInputStream(null, Objects.requireNonNull(path), 0, length);
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            var n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            var skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public long transferTo(OutputStream out) throws IOException {
+            var n = buffer.remaining();
+            if (buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), n);
+                buffer.position(buffer.limit());
+                return n;
+            }
+            return super.transferTo(out);
+        }
+    }
+
+    private static final class ChannelInputStream extends InputStream {
+        private final Path path;
+        private FileChannel channel;
+        private long position;
+        private long remaining;
+        private ByteBuffer wrapped;
+        private byte[] wrappedArray;
+
+        ChannelInputStream(FileChannel channel, Path path, long position, long length) {
+            if (position < 0 || length < 0) {
+                throw new IllegalArgumentException("Position and length must not be negative");
+            }
+            this.channel = channel;
+            this.path = path;
+            this.position = position;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (remaining == 0) {
+                close();
+                return -1;
+            }
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            }
+
+            // Drivers tend to read with the same array every time
+            if (wrappedArray != b) {
+                wrapped = ByteBuffer.wrap(b);
+                wrappedArray = b;
+            }
+            var n = (int) Math.min(len, remaining);
+            wrapped.limit(off + n).position(off);
+            var total = 0;
+            while (wrapped.hasRemaining()) {
+                var read = channel.read(wrapped, position + total);
+                if (read == -1) {
+                    break;
+                }
+                total += read;
+            }
+            if (total == 0) {
+                remaining = 0;
+                close();
+                return -1;
+            }
+            position += total;
+            remaining -= total;
+            // Drivers usually stop once they have read length bytes, without
+            // reading again or closing the stream
+            if (remaining == 0) {
+                close();
+            }
+            return total;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Only close the channel if we opened it
+            if (path != null && channel != null) {
+                channel.close();
+                channel = null;
+                remaining = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dev.mccue.jdbc;
+
+/**
+ * What to do when a transaction is started on a connection which already has a
+ * transaction open on the same thread. This includes a transaction started with
+ * {@link DataSources} on a data source the thread already has a transaction open on,
+ * unless it {@link TransactionOptions.Builder#requiresNew(boolean) requires a new connection}.
+ *
+ * <p>
+ *     Set with {@link TransactionOptions.Builder#nestedTransactions(NestedTransactions)}. A
+ *     transaction which does not set it uses the setting of the transaction it is nested in,
+ *     and {@link NestedTransactions#PROHIBIT} if there is none.
+ * </p>
+ */
+public enum NestedTransactions {
+    /**
+     * Runs the nested transaction as if it were not nested, committing or rolling back
+     * everything done on the connection so far.
+     */
+    ALLOW,
+    /**
+     * Runs the body of the nested transaction as part of the transaction already open.
+     */
+    IGNORE,
+    /**
+     * Throws a {@link java.sql.SQLException} instead of running the nested transaction.
+     */
+    PROHIBIT,
+    /**
+     * Sets a savepoint before running the body of the nested transaction. The savepoint
+     * is released if the body succeeds and rolled back to if it fails, leaving the work done
+     * before it in the outer transaction untouched.
+     *
+     * <p>
+     *     This makes it possible to retry or skip one step without redoing the whole
+     *     outer transaction.
+     * </p>
+     *
+     * <pre>{@code
+     * var savepoint = TransactionOptions.builder()
+     *         .nestedTransactions(NestedTransactions.SAVEPOINT)
+     *         .build();
+     *
+     * Connections.transact(conn, () -> {
+     *     for (var row : rows) {
+     *         try {
+     *             Connections.transact(conn, savepoint, () -> insert(conn, row));
+     *         } catch (SQLException e) {
+     *             // Only this row's insert is rolled back
+     *         }
+     *     }
+     * });
+     * }</pre>
+     */
+    SAVEPOINT
+}
@@ -0,0 +1,20 @@
+package dev.mccue.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Knows how to set a value of a given type as a parameter on a {@link PreparedStatement}.
+ * @param <T> The type of value it will set.
+ */
+@FunctionalInterface
+public interface ParameterBinder<T> {
+    /**
+     * Sets the value as a parameter on the statement.
+     * @param stmt The statement to set the parameter on.
+     * @param parameterIndex The index of the parameter, starting at 1.
+     * @param value The value to set. Will not be null.
+     * @throws SQLException If the driver throws an exception.
+     */
+    void bind(PreparedStatement stmt, int parameterIndex, T value) throws SQLException;
+}
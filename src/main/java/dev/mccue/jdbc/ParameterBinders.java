@@ -0,0 +1,232 @@
+package dev.mccue.jdbc;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides how plain values given to a {@link SQLFragment} are set on a {@link PreparedStatement}.
+ *
+ * <p>
+ *     Instead of giving every value to {@link PreparedStatement#setObject(int, Object)}, values are
+ *     dispatched on their class to the matching {@code setX} method. For example an {@link Integer} is
+ *     set with {@link PreparedStatement#setInt(int, int)} and a {@link String} with
+ *     {@link PreparedStatement#setString(int, String)}. This spares drivers from having to
+ *     inspect the value to work out its type.
+ * </p>
+ *
+ * <p>
+ *     The binder for a class is looked up once and then cached. Values which implement
+ *     {@link SettableParameter} always set themselves, and {@code null} is always set with
+ *     {@link PreparedStatement#setObject(int, Object)}. Anything without a more specific
+ *     binder also falls back to {@link PreparedStatement#setObject(int, Object)}.
+ * </p>
+ */
+public final class ParameterBinders {
+    private ParameterBinders() {}
+
+    private static final Map<Class<?>, ParameterBinder<?>> REGISTERED
+            = new ConcurrentHashMap<>();
+
+    // Replaced wholesale whenever a binder is registered, since a registration
+    // can change the answer for any subclass which was already looked up.
+    private static volatile ClassValue<ParameterBinder<Object>> BINDERS = newBinders();
+
+    /**
+     * Registers a binder to use for values of the given type and any of its subtypes.
+     *
+     * <p>
+     *     Binders registered for a class take precedence over the built-in ones. When multiple
+     *     registered binders could apply, the one registered for the closest superclass wins,
+     *     then the closest interface.
+     * </p>
+     *
+     * @param type The type of value.
+     * @param binder The binder to use.
+     * @param <T> The type of value.
+     */
+    public static <T> void register(Class<T> type, ParameterBinder<? super T> binder) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(binder);
+        REGISTERED.put(type, binder);
+        BINDERS = newBinders();
+    }
+
+    /**
+     * Removes the binder registered for exactly the given type, if there is one.
+     *
+     * @param type The type of value.
+     */
+    public static void unregister(Class<?> type) {
+        Objects.requireNonNull(type);
+        if (REGISTERED.remove(type) != null) {
+            BINDERS = newBinders();
+        }
+    }
+
+    // Only removes the binder if it is still the given one
+    static void unregister(Class<?> type, ParameterBinder<?> binder) {
+        if (REGISTERED.remove(type, binder)) {
+            BINDERS = newBinders();
+        }
+    }
+
+    /**
+     * Returns the binder which will be used for values of exactly the given class.
+     * @param type The class of value.
+     * @return A {@link ParameterBinder}.
+     */
+    public static ParameterBinder<Object> forClass(Class<?> type) {
+        return BINDERS.get(type);
+    }
+
+    /**
+     * Sets the given value on the statement using the binder for its class.
+     * @param stmt The statement to set the parameter on.
+     * @param parameterIndex The index of the parameter, starting at 1.
+     * @param value The value to set.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public static void bind(PreparedStatement stmt, int parameterIndex, Object value) throws SQLException {
+        if (value == null) {
+            stmt.setObject(parameterIndex, null);
+        }
+        else {
+            BINDERS.get(value.getClass()).bind(stmt, parameterIndex, value);
+        }
+    }
+
+    private static ClassValue<ParameterBinder<Object>> newBinders() {
+        return new ClassValue<>() {
+            @Override
+            protected ParameterBinder<Object> computeValue(Class<?> type) {
+                return resolve(type);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ParameterBinder<Object> resolve(Class<?> type) {
+        if (SettableParameter.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> ((SettableParameter) value).setParameter(stmt, i);
+        }
+
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            var binder = REGISTERED.get(c);
+            if (binder != null) {
+                return (ParameterBinder<Object>) binder;
+            }
+        }
+
+        var interfaces = new ArrayDeque<Class<?>>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            interfaces.addAll(List.of(c.getInterfaces()));
+        }
+        while (!interfaces.isEmpty()) {
+            var i = interfaces.poll();
+            var binder = REGISTERED.get(i);
+            if (binder != null) {
+                return (ParameterBinder<Object>) binder;
+            }
+            interfaces.addAll(List.of(i.getInterfaces()));
+        }
+
+        return builtIn(type);
+    }
+
+    private static ParameterBinder<Object> builtIn(Class<?> type) {
+        if (type == String.class) {
+            return (stmt, i, value) -> stmt.setString(i, (String) value);
+        }
+        else if (type == Integer.class) {
+            return (stmt, i, value) -> stmt.setInt(i, (Integer) value);
+        }
+        else if (type == Long.class) {
+            return (stmt, i, value) -> stmt.setLong(i, (Long) value);
+        }
+        else if (type == Boolean.class) {
+            return (stmt, i, value) -> stmt.setBoolean(i, (Boolean) value);
+        }
+        else if (type == Double.class) {
+            return (stmt, i, value) -> stmt.setDouble(i, (Double) value);
+        }
+        else if (type == Float.class) {
+            return (stmt, i, value) -> stmt.setFloat(i, (Float) value);
+        }
+        else if (type == Short.class) {
+            return (stmt, i, value) -> stmt.setShort(i, (Short) value);
+        }
+        else if (type == Byte.class) {
+            return (stmt, i, value) -> stmt.setByte(i, (Byte) value);
+        }
+        else if (type == BigDecimal.class) {
+            return (stmt, i, value) -> stmt.setBigDecimal(i, (BigDecimal) value);
+        }
+        else if (type == byte[].class) {
+            return (stmt, i, value) -> stmt.setBytes(i, (byte[]) value);
+        }
+        else if (type == Date.class) {
+            return (stmt, i, value) -> stmt.setDate(i, (Date) value);
+        }
+        else if (type == Time.class) {
+            return (stmt, i, value) -> stmt.setTime(i, (Time) value);
+        }
+        else if (type == Timestamp.class) {
+            return (stmt, i, value) -> stmt.setTimestamp(i, (Timestamp) value);
+        }
+        else if (type == URL.class) {
+            return (stmt, i, value) -> stmt.setURL(i, (URL) value);
+        }
+        // The java.time types have no dedicated setters, but giving the target
+        // type up front spares the driver from inferring it.
+        else if (type == LocalDate.class) {
+            return (stmt, i, value) -> stmt.setObject(i, value, Types.DATE);
+        }
+        else if (type == LocalTime.class) {
+            return (stmt, i, value) -> stmt.setObject(i, value, Types.TIME);
+        }
+        else if (type == LocalDateTime.class) {
+            return (stmt, i, value) -> stmt.setObject(i, value, Types.TIMESTAMP);
+        }
+        else if (type == OffsetTime.class) {
+            return (stmt, i, value) -> stmt.setObject(i, value, Types.TIME_WITH_TIMEZONE);
+        }
+        else if (type == OffsetDateTime.class) {
+            return (stmt, i, value) -> stmt.setObject(i, value, Types.TIMESTAMP_WITH_TIMEZONE);
+        }
+        else if (Array.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setArray(i, (Array) value);
+        }
+        else if (Blob.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setBlob(i, (Blob) value);
+        }
+        else if (NClob.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setNClob(i, (NClob) value);
+        }
+        else if (Clob.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setClob(i, (Clob) value);
+        }
+        else if (SQLXML.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setSQLXML(i, (SQLXML) value);
+        }
+        else if (RowId.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setRowId(i, (RowId) value);
+        }
+        else if (Ref.class.isAssignableFrom(type)) {
+            return (stmt, i, value) -> stmt.setRef(i, (Ref) value);
+        }
+        else {
+            return PreparedStatement::setObject;
+        }
+    }
+}
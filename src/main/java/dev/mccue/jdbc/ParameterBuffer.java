@@ -0,0 +1,303 @@
+package dev.mccue.jdbc;
+
+import org.intellij.lang.annotations.MagicConstant;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of parameters which stores primitive values without boxing them.
+ *
+ * <p>
+ *     Each value is tagged with its type and kept in a primitive array, so adding an
+ *     {@code int}, {@code long} or {@code double} does not allocate and setting it calls
+ *     {@link PreparedStatement#setInt(int, int)}, {@link PreparedStatement#setLong(int, long)}
+ *     or {@link PreparedStatement#setDouble(int, double)} directly. Other values are set
+ *     with {@link ParameterBinders}.
+ * </p>
+ *
+ * <p>
+ *     A buffer can be reused for many rows of a batch by calling {@link ParameterBuffer#clear()}
+ *     between them.
+ * </p>
+ *
+ * <pre>{@code
+ * var buffer = new ParameterBuffer();
+ * try (var insert = INSERT_POINT.prepare(conn)) {
+ *     for (var point : points) {
+ *         buffer.clear();
+ *         buffer.addLong(point.id()).addDouble(point.x()).addDouble(point.y());
+ *         insert.addBatch(buffer);
+ *     }
+ *     insert.executeBatch();
+ * }
+ * }</pre>
+ *
+ * <p>
+ *     This class is not thread-safe.
+ * </p>
+ */
+public final class ParameterBuffer {
+    private static final byte NULL = 0;
+    private static final byte BOOLEAN = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte FLOAT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte OBJECT = 6;
+
+    private byte[] tags;
+    // Booleans, ints and longs, as well as the SQL type of nulls.
+    private long[] longs;
+    // Floats and doubles
+    private double[] doubles;
+    // Only allocated once an object is added
+    private Object[] objects;
+    private int size;
+
+    public ParameterBuffer() {
+        this(16);
+    }
+
+    public ParameterBuffer(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + initialCapacity);
+        }
+        this.tags = new byte[initialCapacity];
+        this.longs = new long[initialCapacity];
+        this.doubles = new double[initialCapacity];
+        this.objects = null;
+        this.size = 0;
+    }
+
+    private ParameterBuffer(ParameterBuffer other) {
+        this.tags = Arrays.copyOf(other.tags, other.size);
+        this.longs = Arrays.copyOf(other.longs, other.size);
+        this.doubles = Arrays.copyOf(other.doubles, other.size);
+        this.objects = other.objects == null ? null : Arrays.copyOf(other.objects, other.size);
+        this.size = other.size;
+    }
+
+    private int next(byte tag) {
+        if (size == tags.length) {
+            var capacity = Math.max(8, size * 2);
+            tags = Arrays.copyOf(tags, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+        }
+        tags[size] = tag;
+        return size++;
+    }
+
+    /**
+     * @see PreparedStatement#setBoolean(int, boolean)
+     * @param value The value to add.
+     * @return This buffer.
+     */
+    public ParameterBuffer addBoolean(boolean value) {
+        var i = next(BOOLEAN);
+        longs[i] = value ? 1 : 0;
+        return this;
+    }
+
+    /**
+     * @see PreparedStatement#setInt(int, int)
+     * @param value The value to add.
+     * @return This buffer.
+     */
+    public ParameterBuffer addInt(int value) {
+        var i = next(INT);
+        longs[i] = value;
+        return this;
+    }
+
+    /**
+     * @see PreparedStatement#setLong(int, long)
+     * @param value The value to add.
+     * @return This buffer.
+     */
+    public ParameterBuffer addLong(long value) {
+        var i = next(LONG);
+        longs[i] = value;
+        return this;
+    }
+
+    /**
+     * @see PreparedStatement#setFloat(int, float)
+     * @param value The value to add.
+     * @return This buffer.
+     */
+    public ParameterBuffer addFloat(float value) {
+        var i = next(FLOAT);
+        doubles[i] = value;
+        return this;
+    }
+
+    /**
+     * @see PreparedStatement#setDouble(int, double)
+     * @param value The value to add.
+     * @return This buffer.
+     */
+    public ParameterBuffer addDouble(double value) {
+        var i = next(DOUBLE);
+        doubles[i] = value;
+        return this;
+    }
+
+    /**
+     * @see PreparedStatement#setNull(int, int)
+     * @param sqlType The SQL type code defined in {@link Types}.
+     * @return This buffer.
+     */
+    public ParameterBuffer addNull(@MagicConstant(valuesFromClass = Types.class) int sqlType) {
+        var i = next(NULL);
+        longs[i] = sqlType;
+        return this;
+    }
+
+    /**
+     * Adds a value which will be set using {@link ParameterBinders}, the same as a
+     * value in a {@link SQLFragment}.
+     *
+     * @param value The value to add.
+     * @return This buffer.
+     */
+    public ParameterBuffer add(Object value) {
+        var i = next(OBJECT);
+        if (objects == null) {
+            objects = new Object[tags.length];
+        }
+        objects[i] = value;
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every value, keeping the space allocated for them.
+     */
+    public void clear() {
+        if (objects != null) {
+            Arrays.fill(objects, 0, size, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Gets the value at the given index, boxing it if it is primitive.
+     *
+     * @param index The index of the value, starting at 0.
+     * @return The value.
+     */
+    public Object get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return switch (tags[index]) {
+            case NULL -> null;
+            case BOOLEAN -> longs[index] != 0;
+            case INT -> (int) longs[index];
+            case LONG -> longs[index];
+            case FLOAT -> (float) doubles[index];
+            case DOUBLE -> doubles[index];
+            default -> objects[index];
+        };
+    }
+
+    // The class a value will be bound as, with primitives boxed, or null for a null value.
+    Class<?> typeAt(int index) {
+        return switch (tags[index]) {
+            case NULL -> null;
+            case BOOLEAN -> Boolean.class;
+            case INT -> Integer.class;
+            case LONG -> Long.class;
+            case FLOAT -> Float.class;
+            case DOUBLE -> Double.class;
+            default -> objects[index] == null ? null : objects[index].getClass();
+        };
+    }
+
+    /**
+     * Sets every value as a parameter on the statement, starting at the first parameter.
+     *
+     * @param stmt The statement to set the parameters on.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public void bind(PreparedStatement stmt) throws SQLException {
+        bind(stmt, 1);
+    }
+
+    /**
+     * Sets every value as a parameter on the statement, starting at the given parameter.
+     *
+     * @param stmt The statement to set the parameters on.
+     * @param firstParameterIndex The index of the parameter to set the first value as.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public void bind(PreparedStatement stmt, int firstParameterIndex) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            var parameterIndex = firstParameterIndex + i;
+            switch (tags[i]) {
+                case NULL -> stmt.setNull(parameterIndex, (int) longs[i]);
+                case BOOLEAN -> stmt.setBoolean(parameterIndex, longs[i] != 0);
+                case INT -> stmt.setInt(parameterIndex, (int) longs[i]);
+                case LONG -> stmt.setLong(parameterIndex, longs[i]);
+                case FLOAT -> stmt.setFloat(parameterIndex, (float) doubles[i]);
+                case DOUBLE -> stmt.setDouble(parameterIndex, doubles[i]);
+                default -> ParameterBinders.bind(stmt, parameterIndex, objects[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of this buffer which will not see later changes.
+     *
+     * @return A {@link ParameterBuffer}.
+     */
+    public ParameterBuffer copy() {
+        return new ParameterBuffer(this);
+    }
+
+    /**
+     * Returns an unmodifiable view of the values in this buffer, boxing
+     * primitive values as they are read.
+     *
+     * @return A {@link List}.
+     */
+    public List<Object> asList() {
+        return new ListView(this);
+    }
+
+    private static final class ListView extends AbstractList<Object> implements RandomAccess {
+        private final ParameterBuffer buffer;
+
+        ListView(ParameterBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Object get(int index) {
+            return buffer.get(index);
+        }
+
+        @Override
+        public int size() {
+            return buffer.size;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ParameterBuffer" + asList();
+    }
+}
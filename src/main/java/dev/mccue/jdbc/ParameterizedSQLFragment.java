@@ -1,16 +1,30 @@
 package dev.mccue.jdbc;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.RecordComponent;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 
 /// Represents a fragment of SQL where arguments are yet to be filled in.
 ///
-/// These arguments are provided by name, where names are discovered and replaced
-/// in the SQL by the following regex: `:[\w-]+`
+/// These arguments are provided by name. A name is written as `:name`, where the name
+/// is made up of ASCII letters, digits, `_` and `-` (as in the regex `:[\w-]+`).
+///
+/// Names are not looked for inside of string literals, quoted identifiers, comments
+/// or dollar-quoted strings, and `::` is left alone so that casts like `x::int`
+/// work as expected.
 ///
 /// Example:
 /// ```
@@ -19,6 +33,30 @@ import java.util.regex.Pattern;
 /// SQLFragment fragment = selectDog.apply(Map.of("name", "fido"));
 /// ```
 ///
+/// A collection given as a value is expanded to one placeholder per element, so
+/// `WHERE id IN (:ids)` works as expected. The expanded SQL is cached for each
+/// combination of collection sizes. Use `padCollections()` to round sizes up
+/// and keep the number of distinct statements small. Without padding an empty
+/// collection would produce `IN ()`, which most databases reject, so it throws
+/// an `IllegalArgumentException` instead.
+///
+/// Templates can be nested inside of other templates with `compose`, which
+/// does the work of combining them once instead of on every `apply`.
+///
+/// ```
+/// ParameterizedSQLFragment selectDog
+///      = ParameterizedSQLFragment.of("SELECT * FROM dog WHERE :filter")
+///             .compose("filter", ParameterizedSQLFragment.of("name = :name"));
+/// ```
+///
+/// Values can also be taken from the components of a record.
+///
+/// ```
+/// record Dog(String name) {}
+///
+/// SQLFragment fragment = selectDog.apply(new Dog("fido"));
+/// ```
+///
 /// A `SQLFragment` can be directly produced if the arguments are provided inline,
 /// in which case this class is just a pass-through to that behavior.
 ///
@@ -33,11 +71,213 @@ public final class ParameterizedSQLFragment
         implements Function<Map<String, ?>, SQLFragment> {
     private final String parameterizedSQL;
 
+    // The SQL is split into the text around each name, so there is always
+    // one more literal than there are names.
+    private final String[] literals;
+    private final String[] names;
+
+    // The SQL with every name replaced by a ?, for when no value is itself SQL.
+    private final String replacedSQL;
+
+    // When set, collections are expanded to a padded number of placeholders.
+    // Null sizes mean padding to a power of two.
+    private final boolean padCollections;
+    private final int[] paddingSizes;
+
+    private final Map<Class<?>, RecordBinder<?>> recordBinders
+            = new ConcurrentHashMap<>();
+
+    // The SQL with collections expanded, keyed by the number of placeholders
+    // for each name. Bounded, since without padding every size is distinct.
+    private static final int MAX_EXPANDED_SQL = 256;
+    private final Map<Arity, String> expandedSQL
+            = new ConcurrentHashMap<>();
+
     private ParameterizedSQLFragment(String parameterizedSQL) {
         this.parameterizedSQL = Objects.requireNonNull(parameterizedSQL);
+
+        var literals = new ArrayList<String>();
+        var names = new ArrayList<String>();
+        scan(parameterizedSQL, literals, names);
+
+        this.literals = literals.toArray(String[]::new);
+        this.names = names.toArray(String[]::new);
+        this.replacedSQL = String.join("?", this.literals);
+        this.padCollections = false;
+        this.paddingSizes = null;
     }
 
-    private static final Pattern REPLACE_PATTERN = Pattern.compile(":([\\w-]+)");
+    private ParameterizedSQLFragment(
+            String[] literals,
+            String[] names,
+            boolean padCollections,
+            int[] paddingSizes
+    ) {
+        if (paddingSizes != null) {
+            // Fail early on a bad ladder
+            SQLFragment.paddedSize(0, paddingSizes);
+        }
+        var sql = new StringBuilder(literals[0]);
+        for (int i = 0; i < names.length; i++) {
+            sql.append(':').append(names[i]).append(literals[i + 1]);
+        }
+        this.parameterizedSQL = sql.toString();
+        this.literals = literals;
+        this.names = names;
+        this.replacedSQL = String.join("?", literals);
+        this.padCollections = padCollections;
+        this.paddingSizes = paddingSizes == null ? null : paddingSizes.clone();
+    }
+
+    private record Arity(int[] counts) {
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Arity arity && Arrays.equals(counts, arity.counts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(counts);
+        }
+    }
+
+    // Single pass over the SQL which splits it into the literal text around
+    // each :name. Quoted text and comments are copied through untouched.
+    private static void scan(String sql, List<String> literals, List<String> names) {
+        var length = sql.length();
+        var literalStart = 0;
+        var i = 0;
+        while (i < length) {
+            var c = sql.charAt(i);
+            switch (c) {
+                case '\'' -> {
+                    // E'...' strings in Postgres allow backslash escapes
+                    var escapes = i > 0
+                            && (sql.charAt(i - 1) == 'E' || sql.charAt(i - 1) == 'e')
+                            && (i == 1 || !isIdentifierPart(sql.charAt(i - 2)));
+                    i = skipQuoted(sql, i, '\'', escapes);
+                }
+                case '"', '`' -> i = skipQuoted(sql, i, c, false);
+                case '-' -> {
+                    if (i + 1 < length && sql.charAt(i + 1) == '-') {
+                        var end = sql.indexOf('\n', i + 2);
+                        i = end == -1 ? length : end + 1;
+                    }
+                    else {
+                        i++;
+                    }
+                }
+                case '/' -> {
+                    if (i + 1 < length && sql.charAt(i + 1) == '*') {
+                        i = skipBlockComment(sql, i);
+                    }
+                    else {
+                        i++;
+                    }
+                }
+                case '$' -> i = skipDollarQuoted(sql, i);
+                case ':' -> {
+                    if (i + 1 < length && sql.charAt(i + 1) == ':') {
+                        i += 2;
+                    }
+                    else {
+                        var end = i + 1;
+                        while (end < length && isNamePart(sql.charAt(end))) {
+                            end++;
+                        }
+                        if (end > i + 1) {
+                            literals.add(sql.substring(literalStart, i));
+                            names.add(sql.substring(i + 1, end));
+                            literalStart = end;
+                        }
+                        i = end;
+                    }
+                }
+                default -> i++;
+            }
+        }
+        literals.add(sql.substring(literalStart));
+    }
+
+    // Returns the index just past the closing quote, or the end of the SQL
+    // if the quote is never closed. A doubled quote is an escaped quote.
+    private static int skipQuoted(String sql, int start, char quote, boolean backslashEscapes) {
+        var length = sql.length();
+        var i = start + 1;
+        while (i < length) {
+            var c = sql.charAt(i);
+            if (backslashEscapes && c == '\\') {
+                i += 2;
+            }
+            else if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                }
+                else {
+                    return i + 1;
+                }
+            }
+            else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    // Block comments can nest in Postgres and the SQL standard.
+    private static int skipBlockComment(String sql, int start) {
+        var length = sql.length();
+        var depth = 1;
+        var i = start + 2;
+        while (i < length && depth > 0) {
+            if (sql.startsWith("/*", i)) {
+                depth++;
+                i += 2;
+            }
+            else if (sql.startsWith("*/", i)) {
+                depth--;
+                i += 2;
+            }
+            else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    // Handles $$...$$ and $tag$...$tag$. A $ which is part of an identifier
+    // or followed by a digit, as in $1, is not a dollar quote.
+    private static int skipDollarQuoted(String sql, int start) {
+        var length = sql.length();
+        if (start > 0 && isIdentifierPart(sql.charAt(start - 1))) {
+            return start + 1;
+        }
+        var end = start + 1;
+        if (end < length && Character.isDigit(sql.charAt(end))) {
+            return start + 1;
+        }
+        while (end < length && isIdentifierPart(sql.charAt(end)) && sql.charAt(end) != '$') {
+            end++;
+        }
+        if (end >= length || sql.charAt(end) != '$') {
+            return start + 1;
+        }
+        var tag = sql.substring(start, end + 1);
+        var close = sql.indexOf(tag, end + 1);
+        return close == -1 ? length : close + tag.length();
+    }
+
+    private static boolean isNamePart(char c) {
+        return (c >= 'a' && c <= 'z')
+                || (c >= 'A' && c <= 'Z')
+                || (c >= '0' && c <= '9')
+                || c == '_'
+                || c == '-';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
 
     public static ParameterizedSQLFragment of(String sql) {
         return new ParameterizedSQLFragment(sql);
@@ -47,45 +287,406 @@ public final class ParameterizedSQLFragment
             String sql,
             Map<String, ?> params
     ) {
-        var values = new ArrayList<>();
-        var replacedSQL = REPLACE_PATTERN.matcher(sql).replaceAll(matchResult -> {
-            var group = matchResult.group(1);
-            if (!params.containsKey(group)) {
-                throw new IllegalArgumentException("No value for :" + group);
+        return of(sql).apply(params);
+    }
+
+    /**
+     * Returns a {@link ParameterizedSQLFragment} which expands collections to a number of
+     * placeholders rounded up to the next power of two, as with
+     * {@link SQLFragment#ofPaddedPlaceholders(List)}.
+     *
+     * @return A {@link ParameterizedSQLFragment}.
+     */
+    public ParameterizedSQLFragment padCollections() {
+        return new ParameterizedSQLFragment(literals, names, true, null);
+    }
+
+    /**
+     * Returns a {@link ParameterizedSQLFragment} which expands collections to a number of
+     * placeholders rounded up to one of the given sizes, as with
+     * {@link SQLFragment#ofPaddedPlaceholders(List, int...)}.
+     *
+     * @param sizes The allowed numbers of placeholders, in ascending order.
+     * @return A {@link ParameterizedSQLFragment}.
+     */
+    public ParameterizedSQLFragment padCollections(int... sizes) {
+        return new ParameterizedSQLFragment(literals, names, true, Objects.requireNonNull(sizes));
+    }
+
+    /**
+     * Returns a {@link ParameterizedSQLFragment} where every {@code :name} is replaced
+     * by the SQL of the given template.
+     *
+     * <p>
+     *     Unlike giving a {@link ParameterizedSQLFragment} as a value to
+     *     {@link ParameterizedSQLFragment#apply(Map)}, this happens once rather than
+     *     on every call, and the names of the nested template become names of the result.
+     *     Deeply nested templates are best composed from the innermost out.
+     * </p>
+     *
+     * @param name The name to replace.
+     * @param template The template to put in its place.
+     * @return A {@link ParameterizedSQLFragment}.
+     */
+    public ParameterizedSQLFragment compose(String name, ParameterizedSQLFragment template) {
+        return compose(Map.of(name, template));
+    }
+
+    /**
+     * Returns a {@link ParameterizedSQLFragment} where every {@code :name} which is a key
+     * in the given map is replaced by the SQL of the corresponding template.
+     *
+     * @see ParameterizedSQLFragment#compose(String, ParameterizedSQLFragment)
+     * @param templates The templates to put in place of each name.
+     * @return A {@link ParameterizedSQLFragment}.
+     */
+    public ParameterizedSQLFragment compose(Map<String, ParameterizedSQLFragment> templates) {
+        var composedLiterals = new ArrayList<String>();
+        var composedNames = new ArrayList<String>();
+        var current = new StringBuilder(literals[0]);
+        for (int i = 0; i < names.length; i++) {
+            var template = templates.get(names[i]);
+            if (template == null) {
+                composedLiterals.add(current.toString());
+                composedNames.add(names[i]);
+                current = new StringBuilder();
             }
-            var value = params.get(group);
+            else {
+                current.append(template.literals[0]);
+                for (int j = 0; j < template.names.length; j++) {
+                    composedLiterals.add(current.toString());
+                    composedNames.add(template.names[j]);
+                    current = new StringBuilder(template.literals[j + 1]);
+                }
+            }
+            current.append(literals[i + 1]);
+        }
+        composedLiterals.add(current.toString());
+
+        return new ParameterizedSQLFragment(
+                composedLiterals.toArray(String[]::new),
+                composedNames.toArray(String[]::new),
+                padCollections,
+                paddingSizes
+        );
+    }
+
+    @Override
+    public SQLFragment apply(Map<String, ?> parameters) {
+        var values = new Object[names.length];
+        for (int i = 0; i < names.length; i++) {
+            var name = names[i];
+            if (!parameters.containsKey(name)) {
+                throw new IllegalArgumentException("No value for :" + name);
+            }
+            var value = parameters.get(name);
             if (value instanceof ParameterizedSQLFragment parameterizedSQLFragment) {
-                value = parameterizedSQLFragment.apply(params);
+                value = parameterizedSQLFragment.apply(parameters);
             }
+            values[i] = value;
+        }
+        return fill(values);
+    }
 
-            if (value instanceof SQLFragment fragment) {
-                values.addAll(fragment.parameters());
-                return fragment.sql();
+    /**
+     * Produces a {@link SQLFragment} taking the value for each name from the record
+     * component with that name, or whose {@link Column#label()} is that name.
+     *
+     * <p>
+     *     The record's accessors are looked up once per record class and then reused.
+     *     They are looked up with {@link MethodHandles#publicLookup()}, so the record
+     *     must be public. Use {@link ParameterizedSQLFragment#binder(Class, MethodHandles.Lookup)}
+     *     otherwise.
+     * </p>
+     *
+     * @param record The record to take values from.
+     * @return A {@link SQLFragment}.
+     */
+    @SuppressWarnings("unchecked")
+    public SQLFragment apply(Record record) {
+        var binder = (RecordBinder<Record>) recordBinders.computeIfAbsent(
+                record.getClass(),
+                recordClass -> binder((Class<? extends Record>) recordClass)
+        );
+        return binder.apply(record);
+    }
+
+    /**
+     * Makes a {@link RecordBinder} which takes the value for each name from the record
+     * component with that name, or whose {@link Column#label()} is that name.
+     *
+     * @param recordClass The record class.
+     * @return A {@link RecordBinder}.
+     * @param <R> The type of record.
+     * @throws IllegalArgumentException If there is a name with no matching record component.
+     */
+    public <R extends Record> RecordBinder<R> binder(Class<R> recordClass) {
+        return binder(recordClass, MethodHandles.publicLookup());
+    }
+
+    /**
+     * Makes a {@link RecordBinder} which takes the value for each name from the record
+     * component with that name, or whose {@link Column#label()} is that name.
+     *
+     * @param recordClass The record class.
+     * @param lookup A {@link MethodHandles.Lookup} for accessing the record's accessors.
+     * @return A {@link RecordBinder}.
+     * @param <R> The type of record.
+     * @throws IllegalArgumentException If there is a name with no matching record component.
+     */
+    public <R extends Record> RecordBinder<R> binder(Class<R> recordClass, MethodHandles.Lookup lookup) {
+        if (!recordClass.isRecord()) {
+            throw new IllegalArgumentException("Provided class is not a record: " + recordClass.getName());
+        }
+        var components = recordClass.getRecordComponents();
+        var accessors = new MethodHandle[names.length];
+        for (int i = 0; i < names.length; i++) {
+            var name = names[i];
+            RecordComponent match = null;
+            for (var component : components) {
+                var column = component.getAnnotation(Column.class);
+                var label = (column != null && !"".equals(column.label()))
+                        ? column.label()
+                        : component.getName();
+                if (label.equals(name)) {
+                    match = component;
+                    break;
+                }
+            }
+            if (match == null) {
+                throw new IllegalArgumentException(
+                        "No component for :" + name + " in " + recordClass.getName()
+                );
+            }
+            try {
+                accessors[i] = lookup.unreflect(match.getAccessor())
+                        .asType(MethodType.methodType(Object.class, Record.class));
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        return new RecordBinder<>(this, accessors);
+    }
+
+    private SQLFragment fill(Object[] values) {
+        var containsSQL = false;
+        var containsCollection = false;
+        for (var value : values) {
+            if (value instanceof SQLFragment) {
+                containsSQL = true;
+            }
+            else if (value instanceof Collection<?>) {
+                containsCollection = true;
+            }
+        }
+
+        if (!containsSQL && !containsCollection) {
+            return SQLFragment.ofOwned(replacedSQL, values);
+        }
+
+        if (!containsSQL) {
+            // -1 marks a name which is not a collection
+            var counts = new int[values.length];
+            var total = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof Collection<?> collection) {
+                    counts[i] = placeholderCount(i, collection);
+                    total += counts[i];
+                }
+                else {
+                    counts[i] = -1;
+                    total++;
+                }
+            }
+
+            var arity = new Arity(counts);
+            var sql = expandedSQL.get(arity);
+            if (sql == null) {
+                var sb = new StringBuilder();
+                for (int i = 0; i < counts.length; i++) {
+                    sb.append(literals[i]);
+                    sb.append(counts[i] < 0 ? "?" : SQLFragment.placeholders(counts[i]));
+                }
+                sb.append(literals[literals.length - 1]);
+                sql = sb.toString();
+                if (expandedSQL.size() < MAX_EXPANDED_SQL) {
+                    expandedSQL.put(arity, sql);
+                }
+            }
+
+            var flattened = new ArrayList<>(total);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof Collection<?> collection) {
+                    addPadded(flattened, collection, counts[i]);
+                }
+                else {
+                    flattened.add(values[i]);
+                }
+            }
+            return SQLFragment.ofOwned(sql, flattened.toArray());
+        }
+
+        var sql = new StringBuilder();
+        var flattened = new ArrayList<>();
+        for (int i = 0; i < values.length; i++) {
+            sql.append(literals[i]);
+            if (values[i] instanceof SQLFragment fragment) {
+                sql.append(fragment.sql());
+                flattened.addAll(fragment.parameters());
+            }
+            else if (values[i] instanceof Collection<?> collection) {
+                var count = placeholderCount(i, collection);
+                sql.append(SQLFragment.placeholders(count));
+                addPadded(flattened, collection, count);
             }
             else {
-                values.add(params.get(group));
-                return "?";
+                sql.append('?');
+                flattened.add(values[i]);
             }
-        });
+        }
+        sql.append(literals[literals.length - 1]);
+        return SQLFragment.of(sql.toString(), flattened);
+    }
 
-        return SQLFragment.of(replacedSQL, values);
+    private int placeholderCount(int i, Collection<?> collection) {
+        if (!padCollections && collection.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "Value for :" + names[i] + " is an empty collection, which would expand to no placeholders"
+            );
+        }
+        return padCollections
+                ? SQLFragment.paddedSize(collection.size(), paddingSizes)
+                : collection.size();
     }
 
-    @Override
-    public SQLFragment apply(Map<String, ?> parameters) {
-        // TODO: Cache the sql after ?-replacement with a stable value
-        return of(parameterizedSQL, parameters);
+    private static void addPadded(List<Object> values, Collection<?> collection, int count) {
+        Object last = null;
+        for (var value : collection) {
+            values.add(value);
+            last = value;
+        }
+        for (int i = collection.size(); i < count; i++) {
+            values.add(last);
+        }
+    }
+
+    /**
+     * Fills in a {@link ParameterizedSQLFragment} from the components of a record.
+     *
+     * <p>
+     *     Made by {@link ParameterizedSQLFragment#binder(Class)}. Each name is resolved to a record
+     *     accessor up front, so binding a record is just a call to each accessor in order.
+     * </p>
+     *
+     * <pre>{@code
+     * var insert = ParameterizedSQLFragment.of(
+     *         "INSERT INTO orders(id, total) VALUES (:id, :total)"
+     * ).binder(Order.class);
+     *
+     * insert.executeBatch(conn, orders);
+     * }</pre>
+     *
+     * @param <R> The type of record.
+     */
+    public static final class RecordBinder<R extends Record>
+            implements Function<R, SQLFragment> {
+        private final ParameterizedSQLFragment template;
+        private final MethodHandle[] accessors;
+
+        private RecordBinder(ParameterizedSQLFragment template, MethodHandle[] accessors) {
+            this.template = template;
+            this.accessors = accessors;
+        }
+
+        /**
+         * The SQL with a {@code ?} in place of every name. This is the SQL
+         * that {@link RecordBinder#bind(PreparedStatement, Record)} expects.
+         * @return The SQL.
+         */
+        public String sql() {
+            return template.replacedSQL;
+        }
+
+        @Override
+        public SQLFragment apply(R record) {
+            var values = new Object[accessors.length];
+            for (int i = 0; i < accessors.length; i++) {
+                var value = get(i, record);
+                if (value instanceof ParameterizedSQLFragment parameterizedSQLFragment) {
+                    value = parameterizedSQLFragment.apply(record);
+                }
+                values[i] = value;
+            }
+            return template.fill(values);
+        }
+
+        /**
+         * Sets the components of the record directly as the parameters of a statement
+         * prepared with {@link RecordBinder#sql()}.
+         *
+         * @param stmt The statement to set the parameters on.
+         * @param record The record to take values from.
+         * @throws SQLException If the driver throws an exception.
+         * @throws IllegalArgumentException If a component holds SQL or a collection, since that would change
+         *                                  the statement's SQL.
+         */
+        public void bind(PreparedStatement stmt, R record) throws SQLException {
+            for (int i = 0; i < accessors.length; i++) {
+                var value = get(i, record);
+                if (value instanceof SQLFragment || value instanceof ParameterizedSQLFragment) {
+                    throw new IllegalArgumentException(
+                            "Value for :" + template.names[i] + " is SQL and cannot be bound directly"
+                    );
+                }
+                if (value instanceof Collection<?>) {
+                    throw new IllegalArgumentException(
+                            "Value for :" + template.names[i] + " is a collection and cannot be bound directly"
+                    );
+                }
+                ParameterBinders.bind(stmt, i + 1, value);
+            }
+        }
+
+        /**
+         * Inserts, updates or deletes with every record as a single batch.
+         *
+         * @param connection The connection to run the batch on.
+         * @param records The records to take values from.
+         * @return The update counts.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public int[] executeBatch(Connection connection, Iterable<? extends R> records) throws SQLException {
+            try (var stmt = connection.prepareStatement(sql())) {
+                for (var record : records) {
+                    bind(stmt, record);
+                    stmt.addBatch();
+                }
+                return stmt.executeBatch();
+            }
+        }
+
+        private Object get(int i, R record) {
+            try {
+                return (Object) accessors[i].invokeExact((Record) record);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
     }
 
     @Override
     public boolean equals(Object obj) {
         return obj instanceof ParameterizedSQLFragment parameterizedSQLFragment &&
-                parameterizedSQL.equals(parameterizedSQLFragment.parameterizedSQL);
+                parameterizedSQL.equals(parameterizedSQLFragment.parameterizedSQL) &&
+                padCollections == parameterizedSQLFragment.padCollections &&
+                Arrays.equals(paddingSizes, parameterizedSQLFragment.paddingSizes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(parameterizedSQL);
+        return Objects.hash(parameterizedSQL, padCollections, Arrays.hashCode(paddingSizes));
     }
 
     @Override
@@ -93,4 +694,3 @@ public final class ParameterizedSQLFragment
         return "ParameterizedSQLFragment[sql=" + parameterizedSQL + "]";
     }
 }
-
@@ -0,0 +1,492 @@
+package dev.mccue.jdbc;
+
+import org.intellij.lang.annotations.Language;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A query whose SQL is fixed ahead of time and whose values are given
+ * each time it is run.
+ *
+ * <p>
+ *     Where a {@link SQLFragment} holds both SQL and values, a {@link Query} only holds the
+ *     SQL along with how to set and read values. That makes it suitable to keep in a
+ *     {@code static final} field and run many times. Values are set directly from the
+ *     array given, without copying them into any intermediate collection.
+ * </p>
+ *
+ * <pre>{@code
+ * static final Query<Widget> WIDGET_BY_ID = Query.of(
+ *         "SELECT name, number FROM widget WHERE id = ?",
+ *         ResultSets.getRecord(Widget.class),
+ *         int.class
+ * );
+ *
+ * List<Widget> widgets = WIDGET_BY_ID.list(conn, 5);
+ * }</pre>
+ *
+ * <p>
+ *     If parameter types are given, the {@link ParameterBinder} for each is looked up once
+ *     when the query is made. Otherwise one is looked up for the class of each value
+ *     as it is set, same as with a {@link SQLFragment}.
+ * </p>
+ *
+ * <p>
+ *     To run the same query many times on the same connection, {@link Query#prepare(Connection)}
+ *     gives a {@link Prepared} which keeps a single {@link PreparedStatement} open between runs.
+ * </p>
+ *
+ * @param <R> The type of each row produced by the query.
+ */
+public final class Query<R> {
+    @Language("SQL")
+    private final String sql;
+    private final int hash;
+    private final Class<?>[] parameterTypes;
+    // parameterTypes with primitives boxed, to check values against
+    private final Class<?>[] boxedTypes;
+    private final ParameterBinder<Object>[] binders;
+    private final ResultSetGetter<? extends R> getter;
+
+    @SuppressWarnings("unchecked")
+    private Query(String sql, Class<?>[] parameterTypes, ResultSetGetter<? extends R> getter) {
+        this.sql = Objects.requireNonNull(sql);
+        this.hash = sql.hashCode();
+        this.parameterTypes = parameterTypes.clone();
+        this.boxedTypes = new Class<?>[parameterTypes.length];
+        this.binders = new ParameterBinder[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            this.boxedTypes[i] = boxed(parameterTypes[i]);
+            this.binders[i] = ParameterBinders.forClass(this.boxedTypes[i]);
+        }
+        this.getter = getter;
+    }
+
+    /**
+     * Makes a {@link Query} which does not produce rows, like an {@code INSERT} or {@code UPDATE}.
+     *
+     * @param sql The SQL, with a {@code ?} for each parameter.
+     * @param parameterTypes The types of the parameters. If none are given, values will be set
+     *                       based on their class at the time they are set.
+     * @return A {@link Query}.
+     */
+    public static Query<Void> of(@Language("SQL") String sql, Class<?>... parameterTypes) {
+        return new Query<>(sql, parameterTypes, null);
+    }
+
+    /**
+     * Makes a {@link Query} which produces rows.
+     *
+     * @param sql The SQL, with a {@code ?} for each parameter.
+     * @param getter Called to get each row.
+     * @param parameterTypes The types of the parameters. If none are given, values will be set
+     *                       based on their class at the time they are set.
+     * @return A {@link Query}.
+     * @param <R> The type of each row.
+     */
+    public static <R> Query<R> of(
+            @Language("SQL") String sql,
+            ResultSetGetter<? extends R> getter,
+            Class<?>... parameterTypes
+    ) {
+        return new Query<>(sql, parameterTypes, Objects.requireNonNull(getter));
+    }
+
+    /**
+     * Returns a {@link Query} with the same SQL and parameter types, but which
+     * produces rows with the given getter.
+     *
+     * @param getter Called to get each row.
+     * @return A {@link Query}.
+     * @param <T> The type of each row.
+     */
+    public <T> Query<T> withGetter(ResultSetGetter<? extends T> getter) {
+        return new Query<>(sql, parameterTypes, Objects.requireNonNull(getter));
+    }
+
+    public String sql() {
+        return sql;
+    }
+
+    /**
+     * Sets the given values as the parameters of the statement, in order.
+     *
+     * @param stmt The statement to set the parameters on.
+     * @param values The values to set.
+     * @throws SQLException If the driver throws an exception.
+     * @throws IllegalArgumentException If parameter types were given and the number of values does not match,
+     *                                  or a value is not of its declared type.
+     */
+    public void bind(PreparedStatement stmt, Object... values) throws SQLException {
+        if (binders.length == 0) {
+            for (int i = 0; i < values.length; i++) {
+                ParameterBinders.bind(stmt, i + 1, values[i]);
+            }
+        }
+        else {
+            if (values.length != binders.length) {
+                throw new IllegalArgumentException(
+                        "Expected " + binders.length + " values, got " + values.length
+                );
+            }
+            for (int i = 0; i < values.length; i++) {
+                var value = values[i];
+                if (value == null) {
+                    stmt.setObject(i + 1, null);
+                }
+                else if (!boxedTypes[i].isInstance(value)) {
+                    throw wrongType(i, value.getClass());
+                }
+                else {
+                    binders[i].bind(stmt, i + 1, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the values in the buffer as the parameters of the statement, in order.
+     *
+     * @param stmt The statement to set the parameters on.
+     * @param buffer The values to set.
+     * @throws SQLException If the driver throws an exception.
+     * @throws IllegalArgumentException If parameter types were given and the number of values does not match,
+     *                                  or a value is not of its declared type.
+     */
+    public void bind(PreparedStatement stmt, ParameterBuffer buffer) throws SQLException {
+        if (binders.length != 0) {
+            if (buffer.size() != binders.length) {
+                throw new IllegalArgumentException(
+                        "Expected " + binders.length + " values, got " + buffer.size()
+                );
+            }
+            for (int i = 0; i < binders.length; i++) {
+                var type = buffer.typeAt(i);
+                if (type != null && !boxedTypes[i].isAssignableFrom(type)) {
+                    throw wrongType(i, type);
+                }
+            }
+        }
+        buffer.bind(stmt);
+    }
+
+    private IllegalArgumentException wrongType(int i, Class<?> type) {
+        return new IllegalArgumentException(
+                "Parameter " + (i + 1) + " was declared as " + parameterTypes[i].getName()
+                        + ", got " + type.getName()
+        );
+    }
+
+    /**
+     * Prepares a statement for this query and sets the given values on it.
+     *
+     * @param connection The connection to prepare the statement with.
+     * @param values The values to set.
+     * @return A {@link PreparedStatement}, which the caller is responsible for closing.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public PreparedStatement prepareStatement(Connection connection, Object... values) throws SQLException {
+        // If an exception occurs when setting parameters, we should close
+        // the PreparedStatement
+        PreparedStatement stmtTemp = null;
+        try {
+            var stmt = connection.prepareStatement(sql);
+            stmtTemp = stmt;
+            bind(stmt, values);
+            stmtTemp = null;
+            return stmt;
+        } finally {
+            if (stmtTemp != null) {
+                stmtTemp.close();
+            }
+        }
+    }
+
+    /**
+     * Runs the query and reads every row it produces.
+     *
+     * @param connection The connection to run the query on.
+     * @param values The values to set.
+     * @return An unmodifiable list of rows.
+     * @throws SQLException If the driver throws an exception.
+     * @throws IllegalStateException If this query was not made with a {@link ResultSetGetter}.
+     */
+    public List<R> list(Connection connection, Object... values) throws SQLException {
+        try (var stmt = prepareStatement(connection, values)) {
+            return list(stmt);
+        }
+    }
+
+    /**
+     * Runs the query and returns the number of rows updated.
+     *
+     * @param connection The connection to run the query on.
+     * @param values The values to set.
+     * @return The update count.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public int executeUpdate(Connection connection, Object... values) throws SQLException {
+        try (var stmt = prepareStatement(connection, values)) {
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Prepares a statement for this query and sets the values in the buffer on it.
+     *
+     * @param connection The connection to prepare the statement with.
+     * @param buffer The values to set.
+     * @return A {@link PreparedStatement}, which the caller is responsible for closing.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public PreparedStatement prepareStatement(Connection connection, ParameterBuffer buffer) throws SQLException {
+        PreparedStatement stmtTemp = null;
+        try {
+            var stmt = connection.prepareStatement(sql);
+            stmtTemp = stmt;
+            bind(stmt, buffer);
+            stmtTemp = null;
+            return stmt;
+        } finally {
+            if (stmtTemp != null) {
+                stmtTemp.close();
+            }
+        }
+    }
+
+    /**
+     * Runs the query with the values in the buffer and reads every row it produces.
+     *
+     * @param connection The connection to run the query on.
+     * @param buffer The values to set.
+     * @return An unmodifiable list of rows.
+     * @throws SQLException If the driver throws an exception.
+     * @throws IllegalStateException If this query was not made with a {@link ResultSetGetter}.
+     */
+    public List<R> list(Connection connection, ParameterBuffer buffer) throws SQLException {
+        try (var stmt = prepareStatement(connection, buffer)) {
+            return list(stmt);
+        }
+    }
+
+    /**
+     * Runs the query with the values in the buffer and returns the number of rows updated.
+     *
+     * @param connection The connection to run the query on.
+     * @param buffer The values to set.
+     * @return The update count.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public int executeUpdate(Connection connection, ParameterBuffer buffer) throws SQLException {
+        try (var stmt = prepareStatement(connection, buffer)) {
+            return stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Makes a {@link SQLFragment} with this query's SQL and the given values.
+     *
+     * @param values The values to set.
+     * @return A {@link SQLFragment}.
+     */
+    public SQLFragment toSQLFragment(Object... values) {
+        return SQLFragment.of(sql, Arrays.asList(values));
+    }
+
+    /**
+     * Prepares a statement for this query which can then be run many times.
+     *
+     * @param connection The connection to prepare the statement with.
+     * @return A {@link Prepared}, which the caller is responsible for closing.
+     * @throws SQLException If the driver throws an exception.
+     */
+    public Prepared<R> prepare(Connection connection) throws SQLException {
+        return new Prepared<>(this, connection.prepareStatement(sql));
+    }
+
+    private List<R> list(PreparedStatement stmt) throws SQLException {
+        if (getter == null) {
+            throw new IllegalStateException("Query was not made with a ResultSetGetter");
+        }
+        var items = new ArrayList<R>();
+        try (var rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                items.add(getter.get(rs));
+            }
+        }
+        return Collections.unmodifiableList(items);
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        else if (type == int.class) {
+            return Integer.class;
+        }
+        else if (type == long.class) {
+            return Long.class;
+        }
+        else if (type == boolean.class) {
+            return Boolean.class;
+        }
+        else if (type == double.class) {
+            return Double.class;
+        }
+        else if (type == float.class) {
+            return Float.class;
+        }
+        else if (type == byte.class) {
+            return Byte.class;
+        }
+        else if (type == short.class) {
+            return Short.class;
+        }
+        else if (type == char.class) {
+            return Character.class;
+        }
+        else {
+            throw new IllegalArgumentException("Not a valid parameter type: " + type);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Query[sql=" + sql + ", parameterTypes=" + Arrays.toString(parameterTypes) + "]";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Query<?> query
+                && query.hash == hash
+                && query.sql.equals(sql)
+                && Arrays.equals(query.parameterTypes, parameterTypes)
+                && Objects.equals(query.getter, getter);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * A {@link Query} along with a {@link PreparedStatement} for it, which is reused
+     * each time the query is run.
+     *
+     * @param <R> The type of each row produced by the query.
+     */
+    public static final class Prepared<R> implements AutoCloseable {
+        private final Query<R> query;
+        private final PreparedStatement stmt;
+
+        private Prepared(Query<R> query, PreparedStatement stmt) {
+            this.query = query;
+            this.stmt = stmt;
+        }
+
+        public Query<R> query() {
+            return query;
+        }
+
+        public PreparedStatement statement() {
+            return stmt;
+        }
+
+        /**
+         * Runs the query with the given values and reads every row it produces.
+         *
+         * @param values The values to set.
+         * @return An unmodifiable list of rows.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public List<R> list(Object... values) throws SQLException {
+            stmt.clearParameters();
+            query.bind(stmt, values);
+            return query.list(stmt);
+        }
+
+        /**
+         * Runs the query with the given values and returns the number of rows updated.
+         *
+         * @param values The values to set.
+         * @return The update count.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public int executeUpdate(Object... values) throws SQLException {
+            stmt.clearParameters();
+            query.bind(stmt, values);
+            return stmt.executeUpdate();
+        }
+
+        /**
+         * Sets the given values and adds them to the current batch.
+         *
+         * @param values The values to set.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public void addBatch(Object... values) throws SQLException {
+            query.bind(stmt, values);
+            stmt.addBatch();
+        }
+
+        /**
+         * Runs the query with the values in the buffer and reads every row it produces.
+         *
+         * @param buffer The values to set.
+         * @return An unmodifiable list of rows.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public List<R> list(ParameterBuffer buffer) throws SQLException {
+            stmt.clearParameters();
+            query.bind(stmt, buffer);
+            return query.list(stmt);
+        }
+
+        /**
+         * Runs the query with the values in the buffer and returns the number of rows updated.
+         *
+         * @param buffer The values to set.
+         * @return The update count.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public int executeUpdate(ParameterBuffer buffer) throws SQLException {
+            stmt.clearParameters();
+            query.bind(stmt, buffer);
+            return stmt.executeUpdate();
+        }
+
+        /**
+         * Sets the values in the buffer and adds them to the current batch. The buffer
+         * can be cleared and reused for the next set of values right after.
+         *
+         * @param buffer The values to set.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public void addBatch(ParameterBuffer buffer) throws SQLException {
+            query.bind(stmt, buffer);
+            stmt.addBatch();
+        }
+
+        /**
+         * Runs every set of values added with {@link Prepared#addBatch(Object...)}.
+         *
+         * @return The update counts.
+         * @throws SQLException If the driver throws an exception.
+         */
+        public int[] executeBatch() throws SQLException {
+            return stmt.executeBatch();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            stmt.close();
+        }
+    }
+}
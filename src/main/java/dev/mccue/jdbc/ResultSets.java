@@ -1,8 +1,19 @@
 package dev.mccue.jdbc;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.RecordComponent;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
@@ -500,6 +511,327 @@ public final class ResultSets {
         return value;
     }
 
+    /**
+     * Copies the value of a binary column into an {@link OutputStream}, reading it with
+     * {@link ResultSet#getBinaryStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param out The stream to write to. It is not closed.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferBinaryStream(ResultSet rs, int index, OutputStream out) throws SQLException {
+        return transferBinaryStream(rs, index, out, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a binary column into an {@link OutputStream}, reading it with
+     * {@link ResultSet#getBinaryStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param out The stream to write to. It is not closed.
+     * @param maxSize The most bytes to copy before giving up.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferBinaryStream(ResultSet rs, int index, OutputStream out, long maxSize) throws SQLException {
+        return transfer(rs.getBinaryStream(index), String.valueOf(index), out, maxSize);
+    }
+
+    /**
+     * Copies the value of a binary column into an {@link OutputStream}, reading it with
+     * {@link ResultSet#getBinaryStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param out The stream to write to. It is not closed.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferBinaryStream(ResultSet rs, String columnName, OutputStream out) throws SQLException {
+        return transferBinaryStream(rs, columnName, out, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a binary column into an {@link OutputStream}, reading it with
+     * {@link ResultSet#getBinaryStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param out The stream to write to. It is not closed.
+     * @param maxSize The most bytes to copy before giving up.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferBinaryStream(ResultSet rs, String columnName, OutputStream out, long maxSize) throws SQLException {
+        return transfer(rs.getBinaryStream(columnName), columnName, out, maxSize);
+    }
+
+    /**
+     * Copies the value of a binary column into a {@link WritableByteChannel}, reading it with
+     * {@link ResultSet#getBinaryStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param channel The channel to write to. It is not closed.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferBinaryStream(ResultSet rs, int index, WritableByteChannel channel) throws SQLException {
+        return transferBinaryStream(rs, index, channel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a binary column into a {@link WritableByteChannel}, reading it with
+     * {@link ResultSet#getBinaryStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param channel The channel to write to. It is not closed.
+     * @param maxSize The most bytes to copy before giving up.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferBinaryStream(ResultSet rs, int index, WritableByteChannel channel, long maxSize) throws SQLException {
+        return transfer(rs.getBinaryStream(index), String.valueOf(index), channel, maxSize);
+    }
+
+    /**
+     * Copies the value of a binary column into a {@link WritableByteChannel}, reading it with
+     * {@link ResultSet#getBinaryStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param channel The channel to write to. It is not closed.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferBinaryStream(ResultSet rs, String columnName, WritableByteChannel channel) throws SQLException {
+        return transferBinaryStream(rs, columnName, channel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a binary column into a {@link WritableByteChannel}, reading it with
+     * {@link ResultSet#getBinaryStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param channel The channel to write to. It is not closed.
+     * @param maxSize The most bytes to copy before giving up.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferBinaryStream(ResultSet rs, String columnName, WritableByteChannel channel, long maxSize) throws SQLException {
+        return transfer(rs.getBinaryStream(columnName), columnName, channel, maxSize);
+    }
+
+    /**
+     * Copies the value of a binary column into a file, reading it with
+     * {@link ResultSet#getBinaryStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param path The file to write to. It is created if it does not exist and truncated if it does.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferBinaryStream(ResultSet rs, int index, Path path) throws SQLException {
+        return transferBinaryStream(rs, index, path, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a binary column into a file, reading it with
+     * {@link ResultSet#getBinaryStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param path The file to write to. It is created if it does not exist and truncated if it does.
+     * @param maxSize The most bytes to copy before giving up. If the maximum is exceeded the file is deleted.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferBinaryStream(ResultSet rs, int index, Path path, long maxSize) throws SQLException {
+        return transfer(rs.getBinaryStream(index), String.valueOf(index), path, maxSize);
+    }
+
+    /**
+     * Copies the value of a binary column into a file, reading it with
+     * {@link ResultSet#getBinaryStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param path The file to write to. It is created if it does not exist and truncated if it does.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferBinaryStream(ResultSet rs, String columnName, Path path) throws SQLException {
+        return transferBinaryStream(rs, columnName, path, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a binary column into a file, reading it with
+     * {@link ResultSet#getBinaryStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param path The file to write to. It is created if it does not exist and truncated if it does.
+     * @param maxSize The most bytes to copy before giving up. If the maximum is exceeded the file is deleted.
+     * @return The number of bytes copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferBinaryStream(ResultSet rs, String columnName, Path path, long maxSize) throws SQLException {
+        return transfer(rs.getBinaryStream(columnName), columnName, path, maxSize);
+    }
+
+    /**
+     * Copies the value of a character column into a {@link Writer}, reading it with
+     * {@link ResultSet#getCharacterStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param writer The writer to write to. It is not closed.
+     * @return The number of characters copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferCharacterStream(ResultSet rs, int index, Writer writer) throws SQLException {
+        return transferCharacterStream(rs, index, writer, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a character column into a {@link Writer}, reading it with
+     * {@link ResultSet#getCharacterStream(int)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param index The column to get.
+     * @param writer The writer to write to. It is not closed.
+     * @param maxSize The most characters to copy before giving up.
+     * @return The number of characters copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferCharacterStream(ResultSet rs, int index, Writer writer, long maxSize) throws SQLException {
+        return transfer(rs.getCharacterStream(index), String.valueOf(index), writer, maxSize);
+    }
+
+    /**
+     * Copies the value of a character column into a {@link Writer}, reading it with
+     * {@link ResultSet#getCharacterStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param writer The writer to write to. It is not closed.
+     * @return The number of characters copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception or if writing fails.
+     */
+    public static long transferCharacterStream(ResultSet rs, String columnName, Writer writer) throws SQLException {
+        return transferCharacterStream(rs, columnName, writer, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies the value of a character column into a {@link Writer}, reading it with
+     * {@link ResultSet#getCharacterStream(String)} instead of loading it onto the heap.
+     *
+     * @param rs The {@link ResultSet}
+     * @param columnName The column to get.
+     * @param writer The writer to write to. It is not closed.
+     * @param maxSize The most characters to copy before giving up.
+     * @return The number of characters copied, or -1 if the column is null.
+     * @throws SQLException If the driver throws an exception, if writing fails or if the value is larger than maxSize.
+     */
+    public static long transferCharacterStream(ResultSet rs, String columnName, Writer writer, long maxSize) throws SQLException {
+        return transfer(rs.getCharacterStream(columnName), columnName, writer, maxSize);
+    }
+
+    @FunctionalInterface
+    private interface ByteSink {
+        void write(byte[] bytes, int length) throws IOException;
+    }
+
+    private static long transfer(InputStream in, String column, OutputStream out, long maxSize) throws SQLException {
+        return transfer(in, column, (bytes, length) -> out.write(bytes, 0, length), maxSize);
+    }
+
+    private static long transfer(InputStream in, String column, WritableByteChannel channel, long maxSize)
+            throws SQLException {
+        return transfer(in, column, (bytes, length) -> {
+            var buffer = ByteBuffer.wrap(bytes, 0, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }, maxSize);
+    }
+
+    private static long transfer(InputStream in, String column, Path path, long maxSize) throws SQLException {
+        if (in == null) {
+            return -1;
+        }
+        // If the file cannot be opened, the stream still needs to be closed
+        try (in; var channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+        )) {
+            return transfer(in, column, channel, maxSize);
+        } catch (IOException e) {
+            throw new IOSQLException(e);
+        } catch (SQLException e) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException deleteFailed) {
+                e.addSuppressed(deleteFailed);
+            }
+            throw e;
+        }
+    }
+
+    private static long transfer(InputStream in, String column, ByteSink sink, long maxSize) throws SQLException {
+        if (in == null) {
+            return -1;
+        }
+        var buffer = TransferBuffers.acquireBytes();
+        try (in) {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                total += read;
+                if (total > maxSize) {
+                    throw new SQLException("Column " + column + " was larger than " + maxSize + " bytes");
+                }
+                sink.write(buffer, read);
+            }
+            return total;
+        } catch (IOException e) {
+            throw new IOSQLException(e);
+        } finally {
+            TransferBuffers.release(buffer);
+        }
+    }
+
+    private static long transfer(Reader in, String column, Writer writer, long maxSize) throws SQLException {
+        if (in == null) {
+            return -1;
+        }
+        var buffer = TransferBuffers.acquireChars();
+        try (in) {
+            long total = 0;
+            int read;
+            while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                total += read;
+                if (total > maxSize) {
+                    throw new SQLException("Column " + column + " was larger than " + maxSize + " characters");
+                }
+                writer.write(buffer, 0, read);
+            }
+            return total;
+        } catch (IOException e) {
+            throw new IOSQLException(e);
+        } finally {
+            TransferBuffers.release(buffer);
+        }
+    }
+
     /**
      * Directly maps the current row to a record.
      *
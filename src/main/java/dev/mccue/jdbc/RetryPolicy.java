@@ -0,0 +1,202 @@
+package dev.mccue.jdbc;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed transaction should be run again.
+ *
+ * <p>
+ *     Given to {@link TransactionOptions.Builder#retryPolicy(RetryPolicy)}, this makes
+ *     {@link DataSources#transact(javax.sql.DataSource, TransactionOptions, SQLFunction)}
+ *     re-run the body on a fresh connection when it fails with a retryable exception.
+ *     An exception is retryable if it, one of its causes or one of the exceptions chained to a
+ *     {@link SQLException} has one of the given SQLStates or is an instance of one of the given
+ *     classes.
+ * </p>
+ *
+ * <p>
+ *     Between attempts the thread sleeps for a random time between zero and an exponentially
+ *     growing limit, so that transactions which conflicted with each other do not
+ *     conflict again when they retry at the same moment.
+ * </p>
+ *
+ * <pre>{@code
+ * var options = TransactionOptions.builder()
+ *         .isolation(Connection.TRANSACTION_SERIALIZABLE)
+ *         .retryPolicy(RetryPolicy.DEFAULT)
+ *         .build();
+ *
+ * DataSources.transact(db, options, conn -> {
+ *     // ...
+ * });
+ * }</pre>
+ *
+ * <p>
+ *     The body may run more than once, so it should not have side effects outside of
+ *     the transaction.
+ * </p>
+ */
+public final class RetryPolicy {
+    /**
+     * Retries serialization failures ({@code 40001}) and deadlocks ({@code 40P01}) up to
+     * 3 attempts in total, backing off from 10 milliseconds up to 1 second.
+     */
+    public static final RetryPolicy DEFAULT = RetryPolicy.builder().build();
+
+    private final List<String> sqlStates;
+    private final List<Class<? extends Throwable>> exceptionClasses;
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private RetryPolicy(Builder builder) {
+        this.sqlStates = List.copyOf(builder.sqlStates);
+        this.exceptionClasses = List.copyOf(builder.exceptionClasses);
+        this.maxAttempts = builder.maxAttempts;
+        this.initialBackoffNanos = builder.initialBackoff.toNanos();
+        this.maxBackoffNanos = builder.maxBackoff.toNanos();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int maxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param t The exception a transaction failed with.
+     * @return Whether the transaction should be run again.
+     */
+    public boolean isRetryable(Throwable t) {
+        // Causes and chained exceptions can form cycles
+        var visited = new IdentityHashMap<Throwable, Boolean>();
+        var pending = new ArrayList<Throwable>();
+        pending.add(t);
+        while (!pending.isEmpty()) {
+            var current = pending.remove(pending.size() - 1);
+            if (current == null || visited.put(current, true) != null) {
+                continue;
+            }
+            for (var exceptionClass : exceptionClasses) {
+                if (exceptionClass.isInstance(current)) {
+                    return true;
+                }
+            }
+            if (current instanceof SQLException e) {
+                if (e.getSQLState() != null && sqlStates.contains(e.getSQLState())) {
+                    return true;
+                }
+                pending.add(e.getNextException());
+            }
+            pending.add(current.getCause());
+        }
+        return false;
+    }
+
+    /**
+     * @param attempt The attempt which just failed, starting at 1.
+     * @return How long to wait before the next attempt, in nanoseconds.
+     */
+    long backoffNanos(int attempt) {
+        var limit = initialBackoffNanos;
+        for (int i = 1; i < attempt && limit < maxBackoffNanos; i++) {
+            limit = limit > maxBackoffNanos / 2 ? maxBackoffNanos : limit * 2;
+        }
+        limit = Math.min(limit, maxBackoffNanos);
+        return limit <= 0 ? 0 : ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[sqlStates=" + sqlStates
+                + ", exceptionClasses=" + exceptionClasses
+                + ", maxAttempts=" + maxAttempts
+                + ", initialBackoff=" + Duration.ofNanos(initialBackoffNanos)
+                + ", maxBackoff=" + Duration.ofNanos(maxBackoffNanos) + "]";
+    }
+
+    public static final class Builder {
+        private Builder() {}
+
+        private final List<String> sqlStates = new ArrayList<>(List.of("40001", "40P01"));
+        private final List<Class<? extends Throwable>> exceptionClasses = new ArrayList<>();
+        private int maxAttempts = 3;
+        private Duration initialBackoff = Duration.ofMillis(10);
+        private Duration maxBackoff = Duration.ofSeconds(1);
+
+        /**
+         * Replaces the SQLStates which count as retryable. By default these are
+         * {@code 40001} and {@code 40P01}.
+         *
+         * @param sqlStates The SQLStates.
+         * @return This builder.
+         */
+        public Builder sqlStates(String... sqlStates) {
+            this.sqlStates.clear();
+            for (var sqlState : sqlStates) {
+                this.sqlStates.add(Objects.requireNonNull(sqlState));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a class of exception which counts as retryable, like
+         * {@link java.sql.SQLTransactionRollbackException}.
+         *
+         * @param exceptionClass The class of exception.
+         * @return This builder.
+         */
+        public Builder retryOn(Class<? extends Throwable> exceptionClass) {
+            this.exceptionClasses.add(Objects.requireNonNull(exceptionClass));
+            return this;
+        }
+
+        /**
+         * @param maxAttempts The most times to run the transaction, including the first.
+         * @return This builder.
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1: " + maxAttempts);
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param initialBackoff The most time to wait before the second attempt. Doubles for each attempt after.
+         * @return This builder.
+         */
+        public Builder initialBackoff(Duration initialBackoff) {
+            if (initialBackoff.isNegative()) {
+                throw new IllegalArgumentException("initialBackoff must not be negative: " + initialBackoff);
+            }
+            this.initialBackoff = initialBackoff;
+            return this;
+        }
+
+        /**
+         * @param maxBackoff The most time to wait before any attempt.
+         * @return This builder.
+         */
+        public Builder maxBackoff(Duration maxBackoff) {
+            if (maxBackoff.isNegative()) {
+                throw new IllegalArgumentException("maxBackoff must not be negative: " + maxBackoff);
+            }
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
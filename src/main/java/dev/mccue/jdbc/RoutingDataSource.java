@@ -0,0 +1,222 @@
+package dev.mccue.jdbc;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DataSource} made of a primary and any number of read replicas.
+ *
+ * <p>
+ *     Used directly, it gives out connections to the primary. When given to
+ *     {@link DataSources#transact(DataSource, TransactionOptions, SQLFunction)}, transactions with
+ *     {@link TransactionOptions.Builder#readOnly(boolean)} set to true run on a replica and all
+ *     others run on the primary.
+ * </p>
+ *
+ * <p>
+ *     Replicas are balanced by picking two at random and using the one with fewer transactions
+ *     currently running on it through this data source. That avoids both the herding of always
+ *     picking the least loaded replica and the imbalance of picking purely at random.
+ * </p>
+ *
+ * <p>
+ *     Replicas can lag behind the primary. If a read-your-writes window is set, read-only
+ *     transactions on a thread which committed a write within that window also run on the primary,
+ *     so that they see what was just written.
+ * </p>
+ *
+ * <p>
+ *     A transaction nested in a read-only one reuses its connection only if it is read-only too.
+ *     Any other nested transaction throws, since the outer one may be on a replica, unless
+ *     {@link TransactionOptions.Builder#requiresNew(boolean)} sends it to the primary on a connection
+ *     of its own.
+ * </p>
+ *
+ * <pre>{@code
+ * var db = RoutingDataSource.builder(primary)
+ *         .replica(replicaA)
+ *         .replica(replicaB)
+ *         .readYourWritesWindow(Duration.ofSeconds(1))
+ *         .build();
+ *
+ * var readOnly = TransactionOptions.builder().readOnly(true).build();
+ * var widgets = DataSources.transact(db, readOnly, conn -> listWidgets(conn));
+ * }</pre>
+ */
+public final class RoutingDataSource implements DataSource {
+    private final Target primary;
+    private final Target[] replicas;
+    private final long readYourWritesNanos;
+    // When the current thread last committed a write
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[] { Long.MIN_VALUE });
+
+    /// A data source along with how many transactions are running on it.
+    static final class Target {
+        final DataSource dataSource;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Target(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private RoutingDataSource(Builder builder) {
+        this.primary = new Target(builder.primary);
+        this.replicas = builder.replicas.stream().map(Target::new).toArray(Target[]::new);
+        this.readYourWritesNanos = builder.readYourWritesWindow.toNanos();
+    }
+
+    public static Builder builder(DataSource primary) {
+        return new Builder(primary);
+    }
+
+    public DataSource primary() {
+        return primary.dataSource;
+    }
+
+    public List<DataSource> replicas() {
+        var dataSources = new ArrayList<DataSource>(replicas.length);
+        for (var replica : replicas) {
+            dataSources.add(replica.dataSource);
+        }
+        return List.copyOf(dataSources);
+    }
+
+    /// Picks where to run a transaction. The caller has to call {@link Target#release()}
+    /// once the transaction is done.
+    Target select(Boolean readOnly) {
+        var target = primary;
+        if (readOnly != null && readOnly && replicas.length > 0 && !recentlyWrote()) {
+            if (replicas.length == 1) {
+                target = replicas[0];
+            }
+            else {
+                var random = ThreadLocalRandom.current();
+                var a = random.nextInt(replicas.length);
+                var b = random.nextInt(replicas.length - 1);
+                if (b >= a) {
+                    b++;
+                }
+                target = replicas[a].inFlight.get() <= replicas[b].inFlight.get()
+                        ? replicas[a]
+                        : replicas[b];
+            }
+        }
+        target.inFlight.incrementAndGet();
+        return target;
+    }
+
+    void recordWrite() {
+        if (readYourWritesNanos > 0) {
+            lastWrite.get()[0] = System.nanoTime();
+        }
+    }
+
+    private boolean recentlyWrote() {
+        if (readYourWritesNanos <= 0) {
+            return false;
+        }
+        var last = lastWrite.get()[0];
+        return last != Long.MIN_VALUE && System.nanoTime() - last < readYourWritesNanos;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.dataSource.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.dataSource.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return primary.dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return primary.dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.dataSource.isWrapperFor(iface);
+    }
+
+    public static final class Builder {
+        private final DataSource primary;
+        private final List<DataSource> replicas = new ArrayList<>();
+        private Duration readYourWritesWindow = Duration.ZERO;
+
+        private Builder(DataSource primary) {
+            this.primary = Objects.requireNonNull(primary);
+        }
+
+        /**
+         * @param replica A data source for a read replica of the primary.
+         * @return This builder.
+         */
+        public Builder replica(DataSource replica) {
+            this.replicas.add(Objects.requireNonNull(replica));
+            return this;
+        }
+
+        /**
+         * @param readYourWritesWindow How long after a thread commits a write its read-only
+         *                             transactions should still run on the primary. Zero by default.
+         * @return This builder.
+         */
+        public Builder readYourWritesWindow(Duration readYourWritesWindow) {
+            if (readYourWritesWindow.isNegative()) {
+                throw new IllegalArgumentException(
+                        "readYourWritesWindow must not be negative: " + readYourWritesWindow
+                );
+            }
+            this.readYourWritesWindow = readYourWritesWindow;
+            return this;
+        }
+
+        public RoutingDataSource build() {
+            return new RoutingDataSource(this);
+        }
+    }
+}
@@ -14,16 +14,52 @@ public final class SQLFragment {
     @Language("SQL")
     private final String sql;
     private final List<Object> parameters;
+    // When present, parameters is a view of this buffer.
+    private final ParameterBuffer buffer;
 
     private SQLFragment(String sql, List<?> parameters) {
         this.sql = Objects.requireNonNull(sql);
         this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.buffer = null;
+    }
+
+    // Takes ownership of the array instead of copying it.
+    private SQLFragment(String sql, Object[] parameters) {
+        this.sql = Objects.requireNonNull(sql);
+        this.parameters = Collections.unmodifiableList(Arrays.asList(parameters));
+        this.buffer = null;
+    }
+
+    private SQLFragment(String sql, ParameterBuffer buffer) {
+        this.sql = Objects.requireNonNull(sql);
+        this.buffer = buffer.copy();
+        this.parameters = this.buffer.asList();
+    }
+
+    static SQLFragment ofOwned(String sql, Object[] parameters) {
+        return new SQLFragment(sql, parameters);
     }
 
     public static SQLFragment of(String sql, List<?> parameters) {
         return new SQLFragment(sql, parameters);
     }
 
+    /**
+     * Makes a {@link SQLFragment} whose parameters are taken from a {@link ParameterBuffer}.
+     *
+     * <p>
+     *     The buffer is copied, so it can be cleared and reused afterwards. Primitive
+     *     values in it stay unboxed and are set with the matching {@code setX} method.
+     * </p>
+     *
+     * @param sql The SQL.
+     * @param buffer The parameters.
+     * @return A {@link SQLFragment}.
+     */
+    public static SQLFragment of(String sql, ParameterBuffer buffer) {
+        return new SQLFragment(sql, buffer);
+    }
+
     public static SQLFragment of(String sql) {
         return new SQLFragment(sql, Collections.emptyList());
     }
@@ -50,6 +86,91 @@ public final class SQLFragment {
         return SQLFragment.of(sj.toString(), parameters);
     }
 
+    /**
+     * Returns a {@link SQLFragment} of comma-separated {@code ?}s where the number of
+     * placeholders is rounded up to the next power of two.
+     *
+     * <p>
+     *     Every distinct list size given to {@link SQLFragment#ofPlaceholders(List)} produces
+     *     a distinct SQL string, which defeats statement caching for queries like
+     *     {@code WHERE id IN (...)}. Padding keeps the number of distinct strings small.
+     * </p>
+     *
+     * <p>
+     *     The extra placeholders are bound to the last value in the list, which does not
+     *     change the meaning of an {@code IN} or {@code NOT IN}. An empty list produces a
+     *     single placeholder bound to {@code null}, so {@code IN (?)} matches nothing. Note that
+     *     {@code NOT IN (?)} also matches nothing in that case.
+     * </p>
+     *
+     * <p>
+     *     If the driver supports arrays, binding a single array with
+     *     {@link SettableParameter#ofArray(String, Object[])} and writing {@code = ANY(?)}
+     *     avoids varying the SQL at all.
+     * </p>
+     *
+     * @param parameters The list of parameters.
+     * @return A {@link SQLFragment}.
+     */
+    public static SQLFragment ofPaddedPlaceholders(List<?> parameters) {
+        return ofPaddedPlaceholders(parameters, (int[]) null);
+    }
+
+    /**
+     * Returns a {@link SQLFragment} of comma-separated {@code ?}s where the number of
+     * placeholders is rounded up to the smallest of the given sizes which can fit
+     * every parameter.
+     *
+     * <p>
+     *     If there are more parameters than the largest size, the number of placeholders
+     *     is rounded up to a multiple of the largest size. Padding works the same as
+     *     {@link SQLFragment#ofPaddedPlaceholders(List)}.
+     * </p>
+     *
+     * @param parameters The list of parameters.
+     * @param sizes The allowed numbers of placeholders, in ascending order.
+     * @return A {@link SQLFragment}.
+     */
+    public static SQLFragment ofPaddedPlaceholders(List<?> parameters, int... sizes) {
+        var padded = new ArrayList<Object>(parameters);
+        var size = paddedSize(parameters.size(), sizes);
+        var padding = parameters.isEmpty() ? null : parameters.get(parameters.size() - 1);
+        while (padded.size() < size) {
+            padded.add(padding);
+        }
+        return SQLFragment.of(placeholders(size), padded);
+    }
+
+    static String placeholders(int count) {
+        if (count == 0) {
+            return "";
+        }
+        return "?,".repeat(count - 1) + "?";
+    }
+
+    // Rounds up to the next power of two when sizes is null, otherwise to the
+    // next allowed size. Never returns less than 1.
+    static int paddedSize(int count, int[] sizes) {
+        if (sizes == null) {
+            return count <= 1 ? 1 : Integer.highestOneBit(count - 1) << 1;
+        }
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("At least one size must be given");
+        }
+        for (int i = 0; i < sizes.length; i++) {
+            if (sizes[i] <= (i == 0 ? 0 : sizes[i - 1])) {
+                throw new IllegalArgumentException("Sizes must be positive and ascending: " + Arrays.toString(sizes));
+            }
+        }
+        for (int size : sizes) {
+            if (count <= size) {
+                return size;
+            }
+        }
+        var largest = sizes[sizes.length - 1];
+        return ((count + largest - 1) / largest) * largest;
+    }
+
     public SQLFragment concat(SQLFragment other) {
         var params = new ArrayList<>(parameters);
         params.addAll(other.parameters);
@@ -85,14 +206,15 @@ public final class SQLFragment {
         try {
             var stmt = supplier.get(sql);
             stmtTemp = stmt;
-            int i = 1;
-            for (var param : parameters) {
-                if (param instanceof SettableParameter settableParameter) {
-                    settableParameter.setParameter(stmt, i);
-                } else {
-                    stmt.setObject(i, param);
+            if (buffer != null) {
+                buffer.bind(stmt);
+            }
+            else {
+                int i = 1;
+                for (var param : parameters) {
+                    ParameterBinders.bind(stmt, i, param);
+                    i++;
                 }
-                i++;
             }
             stmtTemp = null;
             return stmt;
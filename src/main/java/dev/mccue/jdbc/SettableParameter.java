@@ -2,12 +2,18 @@ package dev.mccue.jdbc;
 
 import org.intellij.lang.annotations.MagicConstant;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
 import java.util.Calendar;
+import java.util.Objects;
 
 
 /**
@@ -164,6 +170,139 @@ public interface SettableParameter {
         return new OfArray(x);
     }
 
+    /**
+     * Sets an array which is created from the statement's connection when the
+     * parameter is set.
+     *
+     * <p>
+     *     This is useful for queries like {@code WHERE id = ANY(?)}, where the same SQL
+     *     can be used no matter how many elements there are.
+     * </p>
+     *
+     * @see Connection#createArrayOf(String, Object[])
+     * @see PreparedStatement#setArray(int, Array)
+     * @param typeName The SQL name of the type the elements of the array map to.
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofArray(String typeName, Object[] elements) {
+        record OfArrayElements(String typeName, Object[] elements) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                stmt.setArray(parameterIndex, stmt.getConnection().createArrayOf(typeName, elements));
+            }
+        }
+        return new OfArrayElements(typeName, elements);
+    }
+
+    /**
+     * Sets an array of {@code bigint}s which is created from the statement's connection
+     * when the parameter is set.
+     *
+     * @see SettableParameter#ofLongArray(String, long[])
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofLongArray(long[] elements) {
+        return ofLongArray("bigint", elements);
+    }
+
+    /**
+     * Sets an array which is created from the statement's connection when the
+     * parameter is set.
+     *
+     * <p>
+     *     If the driver's connection accepts primitive arrays, the elements are passed to it
+     *     as is. Otherwise they are boxed just before {@link Connection#createArrayOf(String, Object[])}
+     *     is called. The array is not copied, so it should not be changed until the
+     *     parameter has been set.
+     * </p>
+     *
+     * <pre>{@code
+     * SQLFragment.of(
+     *     "SELECT * FROM widget WHERE id = ANY(?)",
+     *     List.of(SettableParameter.ofLongArray(ids))
+     * );
+     * }</pre>
+     *
+     * @see Connection#createArrayOf(String, Object[])
+     * @see PreparedStatement#setArray(int, Array)
+     * @param typeName The SQL name of the type the elements of the array map to.
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofLongArray(String typeName, long[] elements) {
+        record OfLongArray(String typeName, long[] elements) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                stmt.setArray(parameterIndex, DriverArrays.createArrayOf(stmt.getConnection(), typeName, elements));
+            }
+        }
+        return new OfLongArray(Objects.requireNonNull(typeName), Objects.requireNonNull(elements));
+    }
+
+    /**
+     * Sets an array of {@code integer}s which is created from the statement's connection
+     * when the parameter is set.
+     *
+     * @see SettableParameter#ofIntArray(String, int[])
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofIntArray(int[] elements) {
+        return ofIntArray("integer", elements);
+    }
+
+    /**
+     * Sets an array which is created from the statement's connection when the
+     * parameter is set.
+     *
+     * <p>
+     *     Works the same as {@link SettableParameter#ofLongArray(String, long[])}.
+     * </p>
+     *
+     * @see Connection#createArrayOf(String, Object[])
+     * @see PreparedStatement#setArray(int, Array)
+     * @param typeName The SQL name of the type the elements of the array map to.
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofIntArray(String typeName, int[] elements) {
+        record OfIntArray(String typeName, int[] elements) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                stmt.setArray(parameterIndex, DriverArrays.createArrayOf(stmt.getConnection(), typeName, elements));
+            }
+        }
+        return new OfIntArray(Objects.requireNonNull(typeName), Objects.requireNonNull(elements));
+    }
+
+    /**
+     * Sets an array of {@code varchar}s which is created from the statement's connection
+     * when the parameter is set.
+     *
+     * @see SettableParameter#ofStringArray(String, String[])
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofStringArray(String[] elements) {
+        return ofStringArray("varchar", elements);
+    }
+
+    /**
+     * Sets an array which is created from the statement's connection when the
+     * parameter is set.
+     *
+     * @see Connection#createArrayOf(String, Object[])
+     * @see PreparedStatement#setArray(int, Array)
+     * @param typeName The SQL name of the type the elements of the array map to.
+     * @param elements The elements of the array.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofStringArray(String typeName, String[] elements) {
+        return ofArray(Objects.requireNonNull(typeName), Objects.requireNonNull(elements));
+    }
+
     /**
      * @see PreparedStatement#setTime(int, Time)
      * @param x The value to set.
@@ -273,6 +412,81 @@ public interface SettableParameter {
         return new OfBinaryStream(x, length);
     }
 
+    /**
+     * Sets the contents of a file as a binary stream with its exact length.
+     *
+     * <p>
+     *     The file is opened when the driver first reads from it and is
+     *     closed once it has been fully read.
+     * </p>
+     *
+     * @see PreparedStatement#setBinaryStream(int, InputStream, long)
+     * @param path The file to read.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofBinaryStream(Path path) {
+        record OfBinaryStreamPath(Path path) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                long length;
+                try {
+                    length = Files.size(path);
+                } catch (IOException e) {
+                    throw new IOSQLException(e);
+                }
+                LobStreams.setBinaryStream(stmt, parameterIndex, LobStreams.of(path, length), length);
+            }
+        }
+        return new OfBinaryStreamPath(path);
+    }
+
+    /**
+     * Sets a region of a file as a binary stream with its exact length.
+     *
+     * <p>
+     *     The region is read with positional reads, so the channel's position is not
+     *     changed. The channel is not closed and must stay open until the statement
+     *     has been executed.
+     * </p>
+     *
+     * @see PreparedStatement#setBinaryStream(int, InputStream, long)
+     * @param channel The channel to read from.
+     * @param position The position in the file to start reading from.
+     * @param length The number of bytes to read.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofBinaryStream(FileChannel channel, long position, long length) {
+        record OfBinaryStreamChannel(FileChannel channel, long position, long length) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                LobStreams.setBinaryStream(stmt, parameterIndex, LobStreams.of(channel, position, length), length);
+            }
+        }
+        return new OfBinaryStreamChannel(channel, position, length);
+    }
+
+    /**
+     * Sets the remaining bytes of a buffer as a binary stream with its exact length.
+     *
+     * <p>
+     *     The buffer's position is not changed. Works for direct and memory-mapped buffers
+     *     without copying them onto the heap first.
+     * </p>
+     *
+     * @see PreparedStatement#setBinaryStream(int, InputStream, long)
+     * @param buffer The buffer to read from.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofBinaryStream(ByteBuffer buffer) {
+        record OfBinaryStreamBuffer(ByteBuffer buffer) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                LobStreams.setBinaryStream(stmt, parameterIndex, LobStreams.of(buffer), buffer.remaining());
+            }
+        }
+        return new OfBinaryStreamBuffer(buffer);
+    }
+
     /**
      * @see PreparedStatement#setCharacterStream(int, Reader)
      * @param reader The value to set.
@@ -647,6 +861,81 @@ public interface SettableParameter {
         return new OfBlob(inputStream, length);
     }
 
+    /**
+     * Sets the contents of a file as a blob with its exact length.
+     *
+     * <p>
+     *     The file is opened when the driver first reads from it and is
+     *     closed once it has been fully read.
+     * </p>
+     *
+     * @see PreparedStatement#setBlob(int, InputStream, long)
+     * @param path The file to read.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofBlob(Path path) {
+        record OfBlobPath(Path path) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                long length;
+                try {
+                    length = Files.size(path);
+                } catch (IOException e) {
+                    throw new IOSQLException(e);
+                }
+                stmt.setBlob(parameterIndex, LobStreams.of(path, length), length);
+            }
+        }
+        return new OfBlobPath(path);
+    }
+
+    /**
+     * Sets a region of a file as a blob with its exact length.
+     *
+     * <p>
+     *     The region is read with positional reads, so the channel's position is not
+     *     changed. The channel is not closed and must stay open until the statement
+     *     has been executed.
+     * </p>
+     *
+     * @see PreparedStatement#setBlob(int, InputStream, long)
+     * @param channel The channel to read from.
+     * @param position The position in the file to start reading from.
+     * @param length The number of bytes to read.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofBlob(FileChannel channel, long position, long length) {
+        record OfBlobChannel(FileChannel channel, long position, long length) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                stmt.setBlob(parameterIndex, LobStreams.of(channel, position, length), length);
+            }
+        }
+        return new OfBlobChannel(channel, position, length);
+    }
+
+    /**
+     * Sets the remaining bytes of a buffer as a blob with its exact length.
+     *
+     * <p>
+     *     The buffer's position is not changed. Works for direct and memory-mapped buffers
+     *     without copying them onto the heap first.
+     * </p>
+     *
+     * @see PreparedStatement#setBlob(int, InputStream, long)
+     * @param buffer The buffer to read from.
+     * @return A {@link SettableParameter}.
+     */
+    static SettableParameter ofBlob(ByteBuffer buffer) {
+        record OfBlobBuffer(ByteBuffer buffer) implements SettableParameter {
+            @Override
+            public void setParameter(PreparedStatement stmt, int parameterIndex) throws SQLException {
+                stmt.setBlob(parameterIndex, LobStreams.of(buffer), buffer.remaining());
+            }
+        }
+        return new OfBlobBuffer(buffer);
+    }
+
     /**
      * @see PreparedStatement#setClob(int, Clob)
      * @param x The value to set.
@@ -0,0 +1,61 @@
+package dev.mccue.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/// Backs {@link Connections#trackState(Connection)}. Values are only cached once
+/// they have been read or set through the wrapper. Until then calls go to the
+/// connection as usual.
+///
+/// Like most connections, it is not safe to use from multiple threads at once.
+final class StateTrackingConnection extends DelegatingConnection {
+    private final ConnectionState state = new ConnectionState();
+
+    private StateTrackingConnection(Connection connection) {
+        super(connection);
+    }
+
+    static Connection wrap(Connection connection) {
+        Objects.requireNonNull(connection);
+        if (connection instanceof StateTrackingConnection) {
+            return connection;
+        }
+        return new StateTrackingConnection(connection);
+    }
+
+    @Override
+    public boolean getAutoCommit() throws SQLException {
+        return state.getAutoCommit(connection);
+    }
+
+    @Override
+    public void setAutoCommit(boolean autoCommit) throws SQLException {
+        state.setAutoCommit(connection, autoCommit);
+    }
+
+    @Override
+    public int getTransactionIsolation() throws SQLException {
+        return state.getTransactionIsolation(connection);
+    }
+
+    @Override
+    public void setTransactionIsolation(int level) throws SQLException {
+        state.setTransactionIsolation(connection, level);
+    }
+
+    @Override
+    public boolean isReadOnly() throws SQLException {
+        return state.isReadOnly(connection);
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        state.setReadOnly(connection, readOnly);
+    }
+
+    @Override
+    public String toString() {
+        return "StateTrackingConnection[" + connection + "]";
+    }
+}
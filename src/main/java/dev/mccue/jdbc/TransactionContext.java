@@ -0,0 +1,199 @@
+package dev.mccue.jdbc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/// What a thread needs to know about the transactions it has open: the
+/// connections they are on, innermost last, and how to treat nested ones.
+///
+/// Connections are kept unwrapped in a stack and compared by identity, along with
+/// the connection as it was given to the body and, for transactions started by
+/// {@link DataSources}, the {@link DataSource} it came from. Starting and
+/// finishing a transaction is a push and a pop, so nothing is allocated unless
+/// transactions nest deeper than the stack has ever been on this thread.
+///
+/// There is at most one per thread, held in {@link #CURRENT}. It is only made once
+/// a thread starts a transaction and is then kept for the thread's next one, so a
+/// virtual thread running several transactions pays for it once. It goes away
+/// along with the thread.
+///
+/// A task wrapped with {@link Connections#inheritTransactions(Callable)} runs with a
+/// context whose bottom frames are copied from the thread which wrapped it. Hooks
+/// registered on those frames go to the parent's context, since that is where the
+/// transaction ends.
+final class TransactionContext {
+    private static final ThreadLocal<TransactionContext> CURRENT = new ThreadLocal<>();
+
+    private Connection[] connections = new Connection[4];
+    private Connection[] handles = new Connection[4];
+    private DataSource[] dataSources = new DataSource[4];
+    private boolean[] readOnly = new boolean[4];
+    // Only made once a hook is registered
+    private TransactionHooks[] hooks = new TransactionHooks[4];
+    private int depth = 0;
+    // The hooks of the transaction which just ended, waiting for whoever started
+    // it to let go of its connection
+    private TransactionHooks ended = null;
+    NestedTransactions nestedTransactions = NestedTransactions.PROHIBIT;
+    // Set when the bottom frames were inherited from another thread
+    private final TransactionContext parent;
+    private final int inheritedDepth;
+
+    private TransactionContext() {
+        this.parent = null;
+        this.inheritedDepth = 0;
+    }
+
+    private TransactionContext(TransactionContext parent) {
+        var capacity = Math.max(4, parent.depth * 2);
+        this.connections = Arrays.copyOf(parent.connections, capacity);
+        this.handles = Arrays.copyOf(parent.handles, capacity);
+        this.dataSources = Arrays.copyOf(parent.dataSources, capacity);
+        this.readOnly = Arrays.copyOf(parent.readOnly, capacity);
+        this.hooks = new TransactionHooks[capacity];
+        this.depth = parent.depth;
+        this.nestedTransactions = parent.nestedTransactions;
+        this.parent = parent;
+        this.inheritedDepth = parent.depth;
+    }
+
+    /// Runs the task on this thread as if the transactions open in the parent were open here.
+    static <T> T runInherited(TransactionContext parent, Callable<T> task) throws Exception {
+        var previous = CURRENT.get();
+        CURRENT.set(new TransactionContext(parent));
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            }
+            else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /// Whether the innermost transaction on the connection was inherited from another thread.
+    boolean inherited(Connection raw) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (connections[i] == raw) {
+                return i < inheritedDepth;
+            }
+        }
+        return false;
+    }
+
+    static TransactionContext current() {
+        var context = CURRENT.get();
+        if (context == null) {
+            context = new TransactionContext();
+            CURRENT.set(context);
+        }
+        return context;
+    }
+
+    boolean contains(Connection raw) {
+        for (int i = 0; i < depth; i++) {
+            if (connections[i] == raw) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// The connection the innermost transaction on the data source is using, if any.
+    Connection connectionFor(DataSource dataSource) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (dataSources[i] == dataSource) {
+                return handles[i];
+            }
+        }
+        return null;
+    }
+
+    /// Whether the innermost transaction started on the data source is read-only.
+    boolean readOnlyFor(DataSource dataSource) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (dataSources[i] == dataSource) {
+                return readOnly[i];
+            }
+        }
+        return false;
+    }
+
+    /// The hooks of the innermost transaction on the connection, or null if there are none.
+    TransactionHooks hooksFor(Connection raw, boolean create) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (connections[i] == raw) {
+                if (i < inheritedDepth) {
+                    return parent.inheritedHooks(i, raw, create);
+                }
+                if (hooks[i] == null && create) {
+                    hooks[i] = new TransactionHooks();
+                }
+                return hooks[i];
+            }
+        }
+        if (create) {
+            throw new IllegalStateException("No transaction is open on this connection");
+        }
+        return null;
+    }
+
+    // Called from a thread which inherited this context, while this thread waits on it
+    private synchronized TransactionHooks inheritedHooks(int i, Connection raw, boolean create) {
+        if (i >= depth || connections[i] != raw) {
+            throw new IllegalStateException("The transaction this task inherited has already ended");
+        }
+        if (hooks[i] == null && create) {
+            hooks[i] = new TransactionHooks();
+        }
+        return hooks[i];
+    }
+
+    /// The hooks of the transaction pushed at the given depth, or null if there are none.
+    TransactionHooks hooksAt(int depth) {
+        return hooks[depth];
+    }
+
+    /// Hands the hooks of a transaction which has just ended to {@link #runEndedHooks()}.
+    void ended(TransactionHooks hooks) {
+        this.ended = hooks;
+    }
+
+    /// Runs the hooks of the transaction which just ended, if it had any.
+    void runEndedHooks() {
+        var hooks = ended;
+        if (hooks != null) {
+            ended = null;
+            hooks.run();
+        }
+    }
+
+    /// Returns the depth before the push, to be given back to {@link #popTo(int)}.
+    int push(Connection raw, Connection connection, DataSource dataSource, boolean readOnly) {
+        if (depth == connections.length) {
+            connections = Arrays.copyOf(connections, depth * 2);
+            handles = Arrays.copyOf(handles, depth * 2);
+            dataSources = Arrays.copyOf(dataSources, depth * 2);
+            this.readOnly = Arrays.copyOf(this.readOnly, depth * 2);
+            hooks = Arrays.copyOf(hooks, depth * 2);
+        }
+        connections[depth] = raw;
+        handles[depth] = connection;
+        dataSources[depth] = dataSource;
+        this.readOnly[depth] = readOnly;
+        return depth++;
+    }
+
+    void popTo(int depth) {
+        // Clear popped slots so closed connections are not kept reachable
+        Arrays.fill(connections, depth, this.depth, null);
+        Arrays.fill(handles, depth, this.depth, null);
+        Arrays.fill(dataSources, depth, this.depth, null);
+        Arrays.fill(hooks, depth, this.depth, null);
+        this.depth = depth;
+    }
+}
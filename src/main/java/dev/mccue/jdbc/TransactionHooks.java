@@ -0,0 +1,84 @@
+package dev.mccue.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/// The hooks registered during one transaction with {@link Connections#afterCommit(java.sql.Connection, Runnable)}
+/// and {@link Connections#afterRollback(java.sql.Connection, Runnable)}.
+///
+/// Tasks which inherited the transaction from another thread can register hooks
+/// at the same time, so changes are synchronized.
+final class TransactionHooks {
+    private static final System.Logger LOG = System.getLogger(TransactionHooks.class.getName());
+
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterRollback = new ArrayList<>();
+    // From savepoints which were rolled back. Whatever they were waiting on
+    // was undone no matter how the transaction ends.
+    private final List<Runnable> afterEither = new ArrayList<>();
+    // Set once the transaction has ended
+    private boolean committed;
+    private Executor executor;
+
+    synchronized void afterCommit(Runnable hook) {
+        afterCommit.add(hook);
+    }
+
+    synchronized void afterRollback(Runnable hook) {
+        afterRollback.add(hook);
+    }
+
+    synchronized int afterCommitMark() {
+        return afterCommit.size();
+    }
+
+    synchronized int afterRollbackMark() {
+        return afterRollback.size();
+    }
+
+    /// Called when a savepoint is rolled back, with the marks taken when it was set.
+    synchronized void rollbackTo(int afterCommitMark, int afterRollbackMark) {
+        afterCommit.subList(afterCommitMark, afterCommit.size()).clear();
+        var rolledBack = afterRollback.subList(afterRollbackMark, afterRollback.size());
+        afterEither.addAll(rolledBack);
+        rolledBack.clear();
+    }
+
+    /// Records how the transaction ended. The hooks are run later by {@link #run()},
+    /// once whatever was held for the transaction has been let go.
+    void end(boolean committed, Executor executor) {
+        this.committed = committed;
+        this.executor = executor;
+    }
+
+    void run() {
+        for (var hook : committed ? afterCommit : afterRollback) {
+            run(hook, executor);
+        }
+        for (var hook : afterEither) {
+            run(hook, executor);
+        }
+    }
+
+    private static void run(Runnable hook, Executor executor) {
+        Runnable guarded = () -> {
+            try {
+                hook.run();
+            } catch (Throwable t) {
+                LOG.log(System.Logger.Level.WARNING, "Transaction hook failed", t);
+            }
+        };
+        if (executor == null) {
+            guarded.run();
+        }
+        else {
+            try {
+                executor.execute(guarded);
+            } catch (RejectedExecutionException e) {
+                LOG.log(System.Logger.Level.WARNING, "Transaction hook was rejected by its executor", e);
+            }
+        }
+    }
+}
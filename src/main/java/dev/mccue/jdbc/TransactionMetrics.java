@@ -0,0 +1,68 @@
+package dev.mccue.jdbc;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the transactions run with {@link Connections} and {@link DataSources}
+ * in this JVM.
+ *
+ * <p>
+ *     A transaction on a connection waits for any other transaction running on that same
+ *     connection to finish first. The time spent waiting is counted here, which is useful for
+ *     spotting connections shared between threads under load. Transactions which did not have
+ *     to wait are not counted.
+ * </p>
+ *
+ * <p>
+ *     Transactions retried because of a {@link RetryPolicy} are also counted, along with the
+ *     time lost to them: how long each failed attempt ran plus how long was spent waiting
+ *     before the next one.
+ * </p>
+ */
+public final class TransactionMetrics {
+    private TransactionMetrics() {}
+
+    private static final LongAdder LOCK_WAITS = new LongAdder();
+    private static final LongAdder LOCK_WAIT_NANOS = new LongAdder();
+
+    private static final LongAdder RETRIES = new LongAdder();
+    private static final LongAdder RETRY_NANOS = new LongAdder();
+
+    static void recordRetry(long nanos) {
+        RETRIES.increment();
+        RETRY_NANOS.add(nanos);
+    }
+
+    static void recordLockWait(long nanos) {
+        LOCK_WAITS.increment();
+        LOCK_WAIT_NANOS.add(nanos);
+    }
+
+    /**
+     * @return The number of times a transaction had to wait for another on the same connection.
+     */
+    public static long lockWaits() {
+        return LOCK_WAITS.sum();
+    }
+
+    /**
+     * @return The total time, in nanoseconds, spent waiting for other transactions on the same connection.
+     */
+    public static long lockWaitNanos() {
+        return LOCK_WAIT_NANOS.sum();
+    }
+
+    /**
+     * @return The number of times a transaction was run again because of a {@link RetryPolicy}.
+     */
+    public static long retries() {
+        return RETRIES.sum();
+    }
+
+    /**
+     * @return The total time, in nanoseconds, spent on failed attempts and waiting to retry them.
+     */
+    public static long retryNanos() {
+        return RETRY_NANOS.sum();
+    }
+}
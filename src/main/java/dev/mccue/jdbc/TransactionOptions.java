@@ -3,6 +3,8 @@ package dev.mccue.jdbc;
 import org.intellij.lang.annotations.MagicConstant;
 
 import java.sql.Connection;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public final class TransactionOptions {
     public static final TransactionOptions DEFAULT
@@ -17,11 +19,19 @@ public final class TransactionOptions {
     }) final Integer isolation;
     final Boolean readOnly;
     final Boolean rollbackOnly;
+    final NestedTransactions nestedTransactions;
+    final RetryPolicy retryPolicy;
+    final Boolean requiresNew;
+    final Executor hookExecutor;
 
     private TransactionOptions(Builder builder) {
         isolation = builder.isolation;
         readOnly = builder.readOnly;
         rollbackOnly = builder.rollbackOnly;
+        nestedTransactions = builder.nestedTransactions;
+        retryPolicy = builder.retryPolicy;
+        requiresNew = builder.requiresNew;
+        hookExecutor = builder.hookExecutor;
     }
 
     public static Builder builder() {
@@ -40,7 +50,10 @@ public final class TransactionOptions {
         }) Integer isolation = null;
         Boolean readOnly = null;
         Boolean rollbackOnly = null;
-
+        NestedTransactions nestedTransactions = null;
+        RetryPolicy retryPolicy = null;
+        Boolean requiresNew = null;
+        Executor hookExecutor = null;
 
         public Builder isolation(
                 @MagicConstant(intValues = {
@@ -64,6 +77,61 @@ public final class TransactionOptions {
             return this;
         }
 
+        /**
+         * Sets what to do if this transaction is nested in another on the same connection,
+         * and what transactions nested in this one should do unless they say otherwise.
+         *
+         * @param nestedTransactions What to do with nested transactions.
+         * @return This builder.
+         */
+        public Builder nestedTransactions(NestedTransactions nestedTransactions) {
+            this.nestedTransactions = Objects.requireNonNull(nestedTransactions);
+            return this;
+        }
+
+        /**
+         * Sets how to retry the transaction if it fails. Only used by
+         * {@link DataSources}, which can get a fresh connection for each attempt.
+         *
+         * @param retryPolicy How to retry the transaction.
+         * @return This builder.
+         */
+        public Builder retryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = Objects.requireNonNull(retryPolicy);
+            return this;
+        }
+
+        /**
+         * Sets whether {@link DataSources} should always get a new connection for this transaction.
+         *
+         * <p>
+         *     By default, a transaction started with {@link DataSources} while the thread is already in
+         *     a transaction on the same data source reuses that transaction's connection, and is
+         *     treated as nested according to {@link TransactionOptions.Builder#nestedTransactions(NestedTransactions)}.
+         *     With this set, it gets its own connection and runs independently.
+         * </p>
+         *
+         * @param requiresNew Whether to always get a new connection.
+         * @return This builder.
+         */
+        public Builder requiresNew(boolean requiresNew) {
+            this.requiresNew = requiresNew;
+            return this;
+        }
+
+        /**
+         * Sets where to run the hooks registered with {@link Connections#afterCommit(Connection, Runnable)}
+         * and {@link Connections#afterRollback(Connection, Runnable)} during this transaction. By default
+         * they run on the thread which ran the transaction, before it returns.
+         *
+         * @param hookExecutor Where to run hooks.
+         * @return This builder.
+         */
+        public Builder hookExecutor(Executor hookExecutor) {
+            this.hookExecutor = Objects.requireNonNull(hookExecutor);
+            return this;
+        }
+
         public TransactionOptions build() {
             return new TransactionOptions(this);
         }
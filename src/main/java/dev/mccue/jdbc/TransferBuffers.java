@@ -0,0 +1,55 @@
+package dev.mccue.jdbc;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/// A small pool of buffers for copying large objects out of a {@link java.sql.ResultSet}.
+///
+/// Slots are claimed with a compare-and-set so this works the same on platform
+/// and virtual threads. When every slot is taken a fresh buffer is allocated,
+/// and buffers released into a full pool are dropped.
+final class TransferBuffers {
+    private TransferBuffers() {}
+
+    static final int BYTES = 64 * 1024;
+    static final int CHARS = 32 * 1024;
+
+    private static final int SLOTS = 16;
+    private static final AtomicReferenceArray<byte[]> BYTE_BUFFERS = new AtomicReferenceArray<>(SLOTS);
+    private static final AtomicReferenceArray<char[]> CHAR_BUFFERS = new AtomicReferenceArray<>(SLOTS);
+
+    static byte[] acquireBytes() {
+        for (int i = 0; i < SLOTS; i++) {
+            var buffer = BYTE_BUFFERS.get(i);
+            if (buffer != null && BYTE_BUFFERS.compareAndSet(i, buffer, null)) {
+                return buffer;
+            }
+        }
+        return new byte[BYTES];
+    }
+
+    static void release(byte[] buffer) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (BYTE_BUFFERS.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    static char[] acquireChars() {
+        for (int i = 0; i < SLOTS; i++) {
+            var buffer = CHAR_BUFFERS.get(i);
+            if (buffer != null && CHAR_BUFFERS.compareAndSet(i, buffer, null)) {
+                return buffer;
+            }
+        }
+        return new char[CHARS];
+    }
+
+    static void release(char[] buffer) {
+        for (int i = 0; i < SLOTS; i++) {
+            if (CHAR_BUFFERS.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.mccue.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Objects;
+
+/**
+ * Knows how to both read a value of a given type from a {@link ResultSet} and
+ * set it as a parameter on a {@link PreparedStatement}.
+ *
+ * @see TypeConverters#register(Class, TypeConverter)
+ * @param <T> The type of value it converts.
+ */
+public interface TypeConverter<T> extends ColumnReader<T>, ParameterBinder<T> {
+    /**
+     * Makes a {@link TypeConverter} from a reader and a writer.
+     *
+     * <pre>{@code
+     * TypeConverters.register(
+     *     WidgetId.class,
+     *     TypeConverter.of(
+     *         (rs, i) -> {
+     *             var value = ResultSets.getLongNullable(rs, i);
+     *             return value == null ? null : new WidgetId(value);
+     *         },
+     *         (stmt, i, id) -> stmt.setLong(i, id.value())
+     *     )
+     * );
+     * }</pre>
+     *
+     * @param reader Reads a value from a column.
+     * @param writer Sets a value as a parameter.
+     * @return A {@link TypeConverter}.
+     * @param <T> The type of value.
+     */
+    static <T> TypeConverter<T> of(ColumnReader<? extends T> reader, ParameterBinder<? super T> writer) {
+        Objects.requireNonNull(reader);
+        Objects.requireNonNull(writer);
+        return new TypeConverter<>() {
+            @Override
+            public T read(ResultSet rs, int columnIndex) throws SQLException {
+                return reader.read(rs, columnIndex);
+            }
+
+            @Override
+            public T read(ResultSet rs, String columnLabel) throws SQLException {
+                return reader.read(rs, columnLabel);
+            }
+
+            @Override
+            public void bind(PreparedStatement stmt, int parameterIndex, T value) throws SQLException {
+                writer.bind(stmt, parameterIndex, value);
+            }
+        };
+    }
+}
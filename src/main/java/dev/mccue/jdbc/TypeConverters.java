@@ -0,0 +1,296 @@
+package dev.mccue.jdbc;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides how values of a given type are read from a {@link ResultSet}, and
+ * lets both that and how they are set on a statement be customized in one place.
+ *
+ * <p>
+ *     {@link ResultSets#getRecord(Class)} reads each record component with the
+ *     {@link ColumnReader} for its type. Primitive types are read with the matching
+ *     {@code getXNotNull} method in {@link ResultSets} and their boxed counterparts with the
+ *     matching {@code getXNullable} method. Anything else is read with
+ *     {@link ResultSet#getObject(int, Class)}.
+ * </p>
+ *
+ * <p>
+ *     {@link TypeConverters#ofEnum(Class)}, {@link TypeConverters#ofInstant()} and
+ *     {@link TypeConverters#ofUUID()} give converters for types which drivers often do not handle
+ *     on their own. They are not used unless registered.
+ * </p>
+ *
+ * <p>
+ *     The reader for a type is looked up once and then cached.
+ * </p>
+ *
+ * <pre>{@code
+ * TypeConverters.register(
+ *     WidgetId.class,
+ *     (rs, i) -> {
+ *         var value = ResultSets.getLongNullable(rs, i);
+ *         return value == null ? null : new WidgetId(value);
+ *     },
+ *     (stmt, i, id) -> stmt.setLong(i, id.value())
+ * );
+ * }</pre>
+ */
+public final class TypeConverters {
+    private TypeConverters() {}
+
+    private static final Map<Class<?>, ColumnReader<?>> REGISTERED
+            = new ConcurrentHashMap<>();
+
+    // Replaced wholesale whenever a converter is registered, same as in ParameterBinders.
+    private static volatile ClassValue<ColumnReader<?>> READERS = newReaders();
+
+    /**
+     * Registers a converter for values of the given type.
+     *
+     * <p>
+     *     The converter is used to read columns of exactly that type. It is also registered
+     *     with {@link ParameterBinders#register(Class, ParameterBinder)}, so it sets values of that
+     *     type and any of its subtypes.
+     * </p>
+     *
+     * @param type The type of value.
+     * @param converter The converter to use.
+     * @param <T> The type of value.
+     */
+    public static <T> void register(Class<T> type, TypeConverter<T> converter) {
+        Objects.requireNonNull(type);
+        Objects.requireNonNull(converter);
+        REGISTERED.put(type, converter);
+        READERS = newReaders();
+        ParameterBinders.register(type, converter);
+    }
+
+    /**
+     * Registers a converter for values of the given type.
+     *
+     * @see TypeConverters#register(Class, TypeConverter)
+     * @param type The type of value.
+     * @param reader Reads a value from a column.
+     * @param writer Sets a value as a parameter.
+     * @param <T> The type of value.
+     */
+    public static <T> void register(
+            Class<T> type,
+            ColumnReader<? extends T> reader,
+            ParameterBinder<? super T> writer
+    ) {
+        register(type, TypeConverter.of(reader, writer));
+    }
+
+    /**
+     * Removes the converter registered for exactly the given type, if there is one.
+     *
+     * <p>
+     *     The converter is removed from {@link ParameterBinders} as well, unless a different
+     *     binder has been registered there for the type since.
+     * </p>
+     *
+     * @param type The type of value.
+     */
+    public static void unregister(Class<?> type) {
+        Objects.requireNonNull(type);
+        var removed = REGISTERED.remove(type);
+        if (removed != null) {
+            READERS = newReaders();
+            ParameterBinders.unregister(type, (TypeConverter<?>) removed);
+        }
+    }
+
+    /**
+     * Makes a converter which reads an enum from its name and sets it with
+     * {@link java.sql.PreparedStatement#setString(int, String)}.
+     *
+     * <p>
+     *     Reading a name which is not a constant of the enum throws a {@link SQLException}.
+     * </p>
+     *
+     * @param type The enum.
+     * @return A {@link TypeConverter}.
+     * @param <E> The enum.
+     */
+    public static <E extends Enum<E>> TypeConverter<E> ofEnum(Class<E> type) {
+        var constants = new HashMap<String, E>();
+        for (var constant : type.getEnumConstants()) {
+            constants.put(constant.name(), constant);
+        }
+        ColumnReader<E> reader = new BuiltIn<>(
+                (rs, i) -> toEnum(type, constants, rs.getString(i)),
+                (rs, label) -> toEnum(type, constants, rs.getString(label))
+        );
+        return TypeConverter.of(reader, (stmt, i, value) -> stmt.setString(i, value.name()));
+    }
+
+    /**
+     * Makes a converter which reads and sets an {@link Instant} as a {@link Timestamp}.
+     *
+     * <p>
+     *     {@link Timestamp} is converted using the JVM's default time zone, so this is only
+     *     suitable when that matches how the database stores timestamps.
+     * </p>
+     *
+     * @return A {@link TypeConverter}.
+     */
+    public static TypeConverter<Instant> ofInstant() {
+        ColumnReader<Instant> reader = new BuiltIn<>(
+                (rs, i) -> {
+                    var timestamp = rs.getTimestamp(i);
+                    return timestamp == null ? null : timestamp.toInstant();
+                },
+                (rs, label) -> {
+                    var timestamp = rs.getTimestamp(label);
+                    return timestamp == null ? null : timestamp.toInstant();
+                }
+        );
+        return TypeConverter.of(reader, (stmt, i, value) -> stmt.setTimestamp(i, Timestamp.from(value)));
+    }
+
+    /**
+     * Makes a converter which reads a {@link UUID} from either a native value, a string or
+     * 16 bytes, and sets it with {@link java.sql.PreparedStatement#setObject(int, Object)}.
+     *
+     * @return A {@link TypeConverter}.
+     */
+    public static TypeConverter<UUID> ofUUID() {
+        ColumnReader<UUID> reader = new BuiltIn<>(
+                (rs, i) -> toUUID(rs.getObject(i)),
+                (rs, label) -> toUUID(rs.getObject(label))
+        );
+        return TypeConverter.of(reader, (stmt, i, value) -> stmt.setObject(i, value));
+    }
+
+    /**
+     * Returns the reader which will be used for values of the given type.
+     *
+     * @param type The type of value.
+     * @return A {@link ColumnReader}.
+     * @param <T> The type of value.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ColumnReader<T> reader(Class<T> type) {
+        return (ColumnReader<T>) READERS.get(type);
+    }
+
+    private static ClassValue<ColumnReader<?>> newReaders() {
+        return new ClassValue<>() {
+            @Override
+            protected ColumnReader<?> computeValue(Class<?> type) {
+                var registered = REGISTERED.get(type);
+                return registered != null ? registered : builtIn(type);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface LabelReader<T> {
+        T read(ResultSet rs, String columnLabel) throws SQLException;
+    }
+
+    // Reads by label directly instead of going through findColumn.
+    private record BuiltIn<T>(ColumnReader<T> byIndex, LabelReader<T> byLabel) implements ColumnReader<T> {
+        @Override
+        public T read(ResultSet rs, int columnIndex) throws SQLException {
+            return byIndex.read(rs, columnIndex);
+        }
+
+        @Override
+        public T read(ResultSet rs, String columnLabel) throws SQLException {
+            return byLabel.read(rs, columnLabel);
+        }
+    }
+
+    private static ColumnReader<?> builtIn(Class<?> type) {
+        if (type == int.class) {
+            return new BuiltIn<Object>(ResultSets::getIntegerNotNull, ResultSets::getIntegerNotNull);
+        }
+        else if (type == long.class) {
+            return new BuiltIn<Object>(ResultSets::getLongNotNull, ResultSets::getLongNotNull);
+        }
+        else if (type == boolean.class) {
+            return new BuiltIn<Object>(ResultSets::getBooleanNotNull, ResultSets::getBooleanNotNull);
+        }
+        else if (type == double.class) {
+            return new BuiltIn<Object>(ResultSets::getDoubleNotNull, ResultSets::getDoubleNotNull);
+        }
+        else if (type == float.class) {
+            return new BuiltIn<Object>(ResultSets::getFloatNotNull, ResultSets::getFloatNotNull);
+        }
+        else if (type == byte.class) {
+            return new BuiltIn<Object>(ResultSets::getByteNotNull, ResultSets::getByteNotNull);
+        }
+        else if (type == short.class) {
+            return new BuiltIn<Object>(ResultSets::getShortNotNull, ResultSets::getShortNotNull);
+        }
+        else if (type == Integer.class) {
+            return new BuiltIn<>(ResultSets::getIntegerNullable, ResultSets::getIntegerNullable);
+        }
+        else if (type == Long.class) {
+            return new BuiltIn<>(ResultSets::getLongNullable, ResultSets::getLongNullable);
+        }
+        else if (type == Boolean.class) {
+            return new BuiltIn<>(ResultSets::getBooleanNullable, ResultSets::getBooleanNullable);
+        }
+        else if (type == Double.class) {
+            return new BuiltIn<>(ResultSets::getDoubleNullable, ResultSets::getDoubleNullable);
+        }
+        else if (type == Float.class) {
+            return new BuiltIn<>(ResultSets::getFloatNullable, ResultSets::getFloatNullable);
+        }
+        else if (type == Byte.class) {
+            return new BuiltIn<>(ResultSets::getByteNullable, ResultSets::getByteNullable);
+        }
+        else if (type == Short.class) {
+            return new BuiltIn<>(ResultSets::getShortNullable, ResultSets::getShortNullable);
+        }
+        else {
+            return new BuiltIn<>(
+                    (rs, i) -> rs.getObject(i, type),
+                    (rs, label) -> rs.getObject(label, type)
+            );
+        }
+    }
+
+    private static UUID toUUID(Object value) throws SQLException {
+        if (value == null || value instanceof UUID) {
+            return (UUID) value;
+        }
+        else if (value instanceof String s) {
+            try {
+                return UUID.fromString(s);
+            } catch (IllegalArgumentException e) {
+                throw new SQLException("Not a valid UUID: " + s, e);
+            }
+        }
+        else if (value instanceof byte[] bytes && bytes.length == 16) {
+            var buffer = ByteBuffer.wrap(bytes);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+        else {
+            throw new SQLException("Cannot convert " + value.getClass().getName() + " to a UUID");
+        }
+    }
+
+    private static <E> E toEnum(Class<E> type, Map<String, E> constants, String name) throws SQLException {
+        if (name == null) {
+            return null;
+        }
+        var constant = constants.get(name);
+        if (constant == null) {
+            throw new SQLException("No constant " + name + " in " + type.getName());
+        }
+        return constant;
+    }
+}
@@ -0,0 +1,280 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.ConnectionPool;
+import dev.mccue.jdbc.DataSources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConnectionPoolTest {
+    SQLiteDataSource db;
+    ConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("CREATE TABLE widget (name text not null)")) {
+            stmt.execute();
+        }
+        this.db = db;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void reusesConnections() throws Exception {
+        pool = ConnectionPool.builder(db).maxSize(2).build();
+
+        Connection physical;
+        try (var conn = pool.getConnection()) {
+            physical = conn.unwrap(Connection.class);
+            assertEquals(1, pool.active());
+        }
+        assertEquals(0, pool.active());
+        assertEquals(1, pool.idle());
+
+        try (var conn = pool.getConnection()) {
+            assertSame(physical, conn.unwrap(Connection.class));
+            try (var other = pool.getConnection()) {
+                assertNotSame(physical, other.unwrap(Connection.class));
+            }
+        }
+        assertEquals(2, pool.total());
+    }
+
+    @Test
+    public void timesOutWhenExhausted() throws Exception {
+        pool = ConnectionPool.builder(db)
+                .maxSize(1)
+                .connectionTimeout(Duration.ofMillis(50))
+                .build();
+
+        try (var ignored = pool.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        }
+        try (var conn = pool.getConnection()) {
+            assertTrue(conn.isValid(1));
+        }
+    }
+
+    @Test
+    public void resetsStateWhenReturned() throws Exception {
+        pool = ConnectionPool.builder(db).maxSize(1).build();
+
+        var conn = pool.getConnection();
+        conn.setAutoCommit(false);
+        try (var stmt = conn.prepareStatement("INSERT INTO widget(name) VALUES ('uncommitted')")) {
+            stmt.execute();
+        }
+        conn.close();
+        conn.close();
+        assertTrue(conn.isClosed());
+        assertThrows(SQLException.class, conn::createStatement);
+
+        try (var again = pool.getConnection();
+             var stmt = again.prepareStatement("SELECT count(*) FROM widget")) {
+            assertTrue(again.getAutoCommit());
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void evictsIdleConnections() throws Exception {
+        pool = ConnectionPool.builder(db)
+                .idleTimeout(Duration.ofMillis(10))
+                .housekeepingInterval(Duration.ofMillis(10))
+                .build();
+
+        DataSources.transact(pool, conn -> {
+            try (var stmt = conn.prepareStatement("INSERT INTO widget(name) VALUES ('a')")) {
+                stmt.execute();
+            }
+        });
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (pool.total() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.total());
+    }
+
+    @Test
+    public void concurrentClosesOnlyReturnOnce() throws Exception {
+        pool = ConnectionPool.builder(db)
+                .maxSize(1)
+                .connectionTimeout(Duration.ofMillis(50))
+                .build();
+
+        for (int attempt = 0; attempt < 50; attempt++) {
+            var conn = pool.getConnection();
+            var start = new CountDownLatch(1);
+            var closers = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                closers.add(Thread.ofVirtual().start(() -> {
+                    try {
+                        start.await();
+                        conn.close();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            }
+            start.countDown();
+            for (var closer : closers) {
+                closer.join();
+            }
+        }
+
+        try (var ignored = pool.getConnection()) {
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        }
+        assertEquals(1, pool.total());
+    }
+
+    @Test
+    public void closesStatementsWhenReturned() throws Exception {
+        pool = ConnectionPool.builder(db).maxSize(1).build();
+
+        var conn = pool.getConnection();
+        var stmt = conn.prepareStatement("SELECT 1");
+        var other = conn.createStatement();
+        assertSame(conn, stmt.getConnection());
+        assertSame(conn, other.getConnection());
+        // Plain wrappers, so calls don't go through reflection
+        assertFalse(Proxy.isProxyClass(conn.getClass()));
+        assertFalse(Proxy.isProxyClass(stmt.getClass()));
+        other.close();
+        conn.close();
+        assertTrue(stmt.isClosed());
+        assertTrue(other.isClosed());
+        assertThrows(SQLException.class, () -> conn.prepareStatement("SELECT 1"));
+        assertThrows(SQLClientInfoException.class, () -> conn.setClientInfo("name", "value"));
+    }
+
+    @Test
+    public void validatesIdleConnections() throws Exception {
+        var opened = new AtomicInteger();
+        var valid = new AtomicBoolean(true);
+        var dataSource = (DataSource) Proxy.newProxyInstance(
+                DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection")) {
+                        opened.incrementAndGet();
+                        var physical = db.getConnection();
+                        return Proxy.newProxyInstance(
+                                Connection.class.getClassLoader(),
+                                new Class<?>[] { Connection.class },
+                                (p, m, a) -> {
+                                    if (m.getName().equals("isValid")) {
+                                        return valid.get();
+                                    }
+                                    try {
+                                        return m.invoke(physical, a);
+                                    } catch (InvocationTargetException e) {
+                                        throw e.getCause();
+                                    }
+                                }
+                        );
+                    }
+                    try {
+                        return method.invoke(db, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+        );
+        pool = ConnectionPool.builder(dataSource)
+                .validationInterval(Duration.ZERO)
+                .build();
+
+        pool.getConnection().close();
+        Thread.sleep(1);
+        pool.getConnection().close();
+        assertEquals(1, opened.get());
+
+        valid.set(false);
+        Thread.sleep(1);
+        pool.getConnection().close();
+        assertEquals(2, opened.get());
+        assertEquals(1, pool.total());
+    }
+
+    @Test
+    public void reportsLeakedConnections() throws Exception {
+        var logger = Logger.getLogger(ConnectionPool.class.getName());
+        var records = new ConcurrentLinkedQueue<LogRecord>();
+        var handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        logger.addHandler(handler);
+        try {
+            pool = ConnectionPool.builder(db)
+                    .leakDetectionThreshold(Duration.ofMillis(10))
+                    .housekeepingInterval(Duration.ofMillis(10))
+                    .build();
+
+            try (var ignored = pool.getConnection()) {
+                var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+                while (records.isEmpty() && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+            assertEquals(1, records.size());
+            var record = records.peek();
+            assertEquals(Level.WARNING, record.getLevel());
+            assertTrue(
+                    Arrays.stream(record.getThrown().getStackTrace())
+                            .anyMatch(frame -> frame.getMethodName().equals("reportsLeakedConnections"))
+            );
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.GroupCommitter;
+import dev.mccue.jdbc.TransactionOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GroupCommitterTest {
+    SQLiteDataSource db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("CREATE TABLE event (id integer primary key, name text not null)")) {
+            stmt.execute();
+        }
+        this.db = db;
+    }
+
+    @Test
+    public void failedBodyOnlyRollsBackItself() throws Exception {
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        try (var committer = GroupCommitter.builder(db)
+                .maxBatchSize(100)
+                .maxDelay(Duration.ofMillis(20))
+                .build()) {
+            for (int i = 0; i < 20; i++) {
+                var n = i;
+                futures.add(committer.submit(conn -> {
+                    try (var stmt = conn.prepareStatement("INSERT INTO event(name) VALUES (?)")) {
+                        stmt.setString(1, "event " + n);
+                        stmt.execute();
+                    }
+                    if (n == 7) {
+                        throw new SQLException("Body failed");
+                    }
+                    return n;
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                if (i == 7) {
+                    var e = assertThrows(CompletionException.class, futures.get(i)::join);
+                    assertInstanceOf(SQLException.class, e.getCause());
+                }
+                else {
+                    assertEquals(i, futures.get(i).join());
+                }
+            }
+        }
+
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("SELECT count(*), count(*) FILTER (WHERE name = 'event 7') FROM event")) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals(19, rs.getInt(1));
+            assertEquals(0, rs.getInt(2));
+        }
+    }
+
+    @Test
+    public void closedCommitterRejectsBodies() {
+        var committer = GroupCommitter.builder(db).build();
+        committer.close();
+        assertThrows(IllegalStateException.class, () -> committer.submit(conn -> {}));
+    }
+
+    @Test
+    public void submissionsRacingCloseAllComplete() throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            var committer = GroupCommitter.builder(db).build();
+            var futures = new ConcurrentLinkedQueue<CompletableFuture<Void>>();
+            var submitter = Thread.ofVirtual().start(() -> {
+                try {
+                    while (true) {
+                        futures.add(committer.submit(conn -> {}));
+                    }
+                } catch (IllegalStateException closed) {
+                    // Expected once close is called
+                }
+            });
+            committer.close();
+            submitter.join();
+            for (var future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    public void interruptingTheCommitterClosesIt() throws Exception {
+        var thread = new CompletableFuture<Thread>();
+        var committer = GroupCommitter.builder(db)
+                .threadFactory(runnable -> {
+                    var t = Thread.ofPlatform().daemon().unstarted(runnable);
+                    thread.complete(t);
+                    return t;
+                })
+                .build();
+        var before = committer.submit(conn -> {});
+        thread.join().interrupt();
+        thread.join().join(5000);
+        assertFalse(thread.join().isAlive());
+
+        // Submitted before the interrupt, so it either ran or was failed
+        try {
+            before.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        assertThrows(IllegalStateException.class, () -> committer.submit(conn -> {}));
+        committer.close();
+    }
+
+    @Test
+    public void rejectsRollbackOnlyOptions() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> GroupCommitter.builder(db).options(TransactionOptions.builder().rollbackOnly(true).build())
+        );
+    }
+}
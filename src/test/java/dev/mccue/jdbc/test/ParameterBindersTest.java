@@ -0,0 +1,103 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.ParameterBinders;
+import dev.mccue.jdbc.ResultSets;
+import dev.mccue.jdbc.SQLFragment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ParameterBindersTest {
+    SQLiteDataSource db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        this.db = db;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ParameterBinders.unregister(Name.class);
+        ParameterBinders.unregister(Tagged.class);
+    }
+
+    record Name(String value) {}
+
+    interface Tagged {
+        String tag();
+    }
+
+    record Tag(String tag) implements Tagged {}
+
+    @Test
+    public void bindsBuiltInTypes() throws Exception {
+        try (var conn = db.getConnection();
+             var stmt = SQLFragment.of(
+                     "SELECT ?, ?, ?, ?, ?",
+                     Arrays.asList(1, 2L, "a", new BigDecimal("1.5"), null)
+             ).prepareStatement(conn)) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+            assertEquals(2L, rs.getLong(2));
+            assertEquals("a", rs.getString(3));
+            assertEquals(1.5, rs.getDouble(4));
+            assertNull(ResultSets.getIntegerNullable(rs, 5));
+        }
+    }
+
+    @Test
+    public void bindsBuiltInTypesWithTheirOwnSetters() throws Exception {
+        var calls = new ArrayList<String>();
+        var stmt = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    return null;
+                }
+        );
+        var values = Arrays.asList(1, 2L, "a", new BigDecimal("1.5"), true, 2.5, new byte[] { 1 }, null);
+        for (int i = 0; i < values.size(); i++) {
+            ParameterBinders.bind(stmt, i + 1, values.get(i));
+        }
+        assertEquals(
+                List.of(
+                        "setInt", "setLong", "setString", "setBigDecimal",
+                        "setBoolean", "setDouble", "setBytes", "setObject"
+                ),
+                calls
+        );
+    }
+
+    @Test
+    public void bindsRegisteredTypes() throws Exception {
+        ParameterBinders.register(Name.class, (stmt, i, name) -> stmt.setString(i, name.value()));
+        ParameterBinders.register(Tagged.class, (stmt, i, tagged) -> stmt.setString(i, "#" + tagged.tag()));
+        try (var conn = db.getConnection();
+             var stmt = SQLFragment.of(
+                     "SELECT ?, ?",
+                     Arrays.asList(new Name("bob"), new Tag("x"))
+             ).prepareStatement(conn)) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals("bob", rs.getString(1));
+            assertEquals("#x", rs.getString(2));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.ParameterBuffer;
+import dev.mccue.jdbc.Query;
+import dev.mccue.jdbc.ResultSets;
+import dev.mccue.jdbc.SQLFragment;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ParameterBufferTest {
+    @Test
+    public void boxesOnlyWhenRead() {
+        var buffer = new ParameterBuffer(0)
+                .addInt(1)
+                .addLong(2L)
+                .addDouble(3.5)
+                .addFloat(4.5f)
+                .addBoolean(true)
+                .addNull(Types.INTEGER)
+                .add("a");
+        assertEquals(7, buffer.size());
+        assertEquals(Arrays.asList(1, 2L, 3.5, 4.5f, true, null, "a"), buffer.asList());
+
+        var fragment = SQLFragment.of("SELECT ?, ?, ?, ?, ?, ?, ?", buffer);
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(
+                SQLFragment.of("SELECT ?, ?, ?, ?, ?, ?, ?", Arrays.asList(1, 2L, 3.5, 4.5f, true, null, "a")),
+                fragment
+        );
+    }
+
+    @Test
+    public void bindsBatches() throws Exception {
+        record Point(long id, double x, double y) {}
+
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        try (var conn = db.getConnection()) {
+            try (var stmt = conn.prepareStatement("CREATE TABLE point(id integer primary key, x real, y real)")) {
+                stmt.execute();
+            }
+
+            var insert = Query.of("INSERT INTO point(id, x, y) VALUES (?, ?, ?)", long.class, double.class, double.class);
+            var buffer = new ParameterBuffer();
+            try (var prepared = insert.prepare(conn)) {
+                for (int i = 0; i < 100; i++) {
+                    buffer.clear();
+                    buffer.addLong(i).addDouble(i * 1.5).addDouble(i * 2.5);
+                    prepared.addBatch(buffer);
+                }
+                assertEquals(100, prepared.executeBatch().length);
+            }
+
+            var select = Query.of(
+                    "SELECT id, x, y FROM point WHERE id = ?",
+                    ResultSets.getRecord(Point.class, MethodHandles.lookup())
+            );
+            try (var prepared = select.prepare(conn)) {
+                buffer.clear();
+                assertEquals(List.of(new Point(10, 15, 25)), prepared.list(buffer.addLong(10)));
+            }
+
+            buffer.clear();
+            assertEquals(List.of(new Point(20, 30, 50)), select.list(conn, buffer.addLong(20)));
+            buffer.clear();
+            assertEquals(1, insert.executeUpdate(conn, buffer.addLong(500).addDouble(1).addNull(Types.REAL)));
+
+            buffer.clear();
+            var e = assertThrows(
+                    IllegalArgumentException.class,
+                    () -> insert.executeUpdate(conn, buffer.add("600").addDouble(1).addDouble(2))
+            );
+            assertEquals("Parameter 1 was declared as long, got java.lang.String", e.getMessage());
+
+            try (var stmt = SQLFragment.of("SELECT count(*) FROM point WHERE x > ?", new ParameterBuffer().addDouble(100))
+                    .prepareStatement(conn)) {
+                var rs = stmt.executeQuery();
+                rs.next();
+                assertEquals(33, rs.getInt(1));
+            }
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package dev.mccue.jdbc.test;
 
+import dev.mccue.jdbc.Column;
 import dev.mccue.jdbc.ParameterizedSQLFragment;
+import dev.mccue.jdbc.ResultSets;
 import dev.mccue.jdbc.SQLFragment;
 import dev.mccue.jdbc.SettableParameter;
 import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
 
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class ParameterizedSQLFragmentTest {
     @Test
@@ -120,4 +129,176 @@ public class ParameterizedSQLFragmentTest {
                 )
         );
     }
+
+    @Test
+    public void testSharesReplacedSQL() {
+        var template = ParameterizedSQLFragment.of("SELECT * FROM stuff WHERE a = :a AND b = :b");
+        var first = template.apply(Map.of("a", 1, "b", 2));
+        var second = template.apply(Map.of("a", 3, "b", 4));
+        assertEquals(SQLFragment.of("SELECT * FROM stuff WHERE a = ? AND b = ?", List.of(1, 2)), first);
+        assertEquals(SQLFragment.of("SELECT * FROM stuff WHERE a = ? AND b = ?", List.of(3, 4)), second);
+        assertSame(first.sql(), second.sql());
+    }
+
+    @Test
+    public void testMissingValue() {
+        var template = ParameterizedSQLFragment.of("SELECT * FROM stuff WHERE a = :a");
+        assertThrows(IllegalArgumentException.class, () -> template.apply(Map.of("b", 1)));
+    }
+
+    @Test
+    public void testSkipsQuotedTextAndComments() {
+        assertEquals(
+                SQLFragment.of("""
+                        SELECT ':a', "b:c", `d:e`, E'\\':f', 'it''s :g' -- :h
+                        FROM stuff /* :i /* :j */ :k */
+                        WHERE a = ? AND b = $$ :l $$ AND c = $tag$ :m $$ $tag$
+                        """, List.of(1)),
+                ParameterizedSQLFragment.of("""
+                        SELECT ':a', "b:c", `d:e`, E'\\':f', 'it''s :g' -- :h
+                        FROM stuff /* :i /* :j */ :k */
+                        WHERE a = :a AND b = $$ :l $$ AND c = $tag$ :m $$ $tag$
+                        """).apply(Map.of("a", 1))
+        );
+    }
+
+    @Test
+    public void testSkipsCasts() {
+        assertEquals(
+                SQLFragment.of("SELECT ?::int, a::text, $1, b$c FROM stuff WHERE d = ?", List.of(1, 2)),
+                ParameterizedSQLFragment.of("SELECT :a::int, a::text, $1, b$c FROM stuff WHERE d = :d")
+                        .apply(Map.of("a", 1, "d", 2))
+        );
+    }
+
+    public record Dog(String name, @Column(label = "age-in-years") int age) {}
+
+    @Test
+    public void testRecordReplacements() {
+        assertEquals(
+                SQLFragment.of("SELECT * FROM dog WHERE name = ? AND age = ? OR name = ?", List.of("fido", 3, "fido")),
+                ParameterizedSQLFragment.of("SELECT * FROM dog WHERE name = :name AND age = :age-in-years OR name = :name")
+                        .apply(new Dog("fido", 3))
+        );
+    }
+
+    @Test
+    public void testRecordMissingComponent() {
+        var template = ParameterizedSQLFragment.of("SELECT * FROM dog WHERE owner = :owner");
+        assertThrows(IllegalArgumentException.class, () -> template.binder(Dog.class));
+    }
+
+    @Test
+    public void testRecordBatch() throws Exception {
+        record Order(int id, String item) {}
+
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        try (var conn = db.getConnection()) {
+            try (var stmt = conn.prepareStatement("CREATE TABLE orders(id integer primary key, item text)")) {
+                stmt.execute();
+            }
+
+            var insert = ParameterizedSQLFragment.of("INSERT INTO orders(id, item) VALUES (:id, :item)")
+                    .binder(Order.class, MethodHandles.lookup());
+            assertEquals("INSERT INTO orders(id, item) VALUES (?, ?)", insert.sql());
+            assertEquals(3, insert.executeBatch(conn, List.of(
+                    new Order(1, "a"),
+                    new Order(2, "b"),
+                    new Order(3, "c")
+            )).length);
+
+            try (var stmt = conn.prepareStatement("SELECT id, item FROM orders ORDER BY id")) {
+                assertEquals(
+                        List.of(new Order(1, "a"), new Order(2, "b"), new Order(3, "c")),
+                        ResultSets.stream(stmt.executeQuery(), ResultSets.getRecord(Order.class, MethodHandles.lookup()))
+                                .toList()
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testExpandsCollections() {
+        var template = ParameterizedSQLFragment.of("SELECT * FROM stuff WHERE a IN (:a) AND b = :b AND c IN (:c)");
+        var first = template.apply(Map.of("a", List.of(1, 2, 3), "b", 4, "c", Set.of(5)));
+        assertEquals(
+                SQLFragment.of("SELECT * FROM stuff WHERE a IN (?,?,?) AND b = ? AND c IN (?)", List.of(1, 2, 3, 4, 5)),
+                first
+        );
+        var second = template.apply(Map.of("a", List.of(6, 7, 8), "b", 9, "c", List.of(10)));
+        assertSame(first.sql(), second.sql());
+    }
+
+    @Test
+    public void testPadsCollections() {
+        var template = ParameterizedSQLFragment.of("SELECT * FROM stuff WHERE a IN (:a)").padCollections();
+        assertEquals(
+                SQLFragment.of("SELECT * FROM stuff WHERE a IN (?,?,?,?)", List.of(1, 2, 3, 3)),
+                template.apply(Map.of("a", List.of(1, 2, 3)))
+        );
+        assertEquals(
+                SQLFragment.of("SELECT * FROM stuff WHERE a IN (?,?,?,?,?)", List.of(1, 2, 2, 2, 2)),
+                template.padCollections(5, 10).apply(Map.of("a", List.of(1, 2)))
+        );
+    }
+
+    @Test
+    public void testRejectsEmptyCollections() {
+        var template = ParameterizedSQLFragment.of("SELECT * FROM stuff WHERE a IN (:a)");
+        var e = assertThrows(
+                IllegalArgumentException.class,
+                () -> template.apply(Map.of("a", List.of()))
+        );
+        assertEquals("Value for :a is an empty collection, which would expand to no placeholders", e.getMessage());
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> template.apply(Map.of("a", List.of(), "b", SQLFragment.of("")))
+        );
+
+        // Padding binds a single null instead
+        assertEquals(
+                SQLFragment.of("SELECT * FROM stuff WHERE a IN (?)", Arrays.asList((Object) null)),
+                template.padCollections().apply(Map.of("a", List.of()))
+        );
+    }
+
+    @Test
+    public void testExpandsCollectionsAlongsideSQL() {
+        assertEquals(
+                SQLFragment.of("SELECT * FROM stuff WHERE num > ? AND a IN (?,?)", List.of(5, "x", "y")),
+                ParameterizedSQLFragment.of(
+                        "SELECT * FROM stuff :where_clause AND a IN (:a)",
+                        Map.of(
+                                "where_clause", SQLFragment.of("WHERE num > ?", List.of(5)),
+                                "a", List.of("x", "y")
+                        )
+                )
+        );
+    }
+
+    @Test
+    public void testCompose() {
+        var byName = ParameterizedSQLFragment.of("name = :name");
+        var byAge = ParameterizedSQLFragment.of("age > :age");
+        var filter = ParameterizedSQLFragment.of("(:by_name AND :by_age)")
+                .compose(Map.of("by_name", byName, "by_age", byAge));
+        var select = ParameterizedSQLFragment.of("SELECT * FROM dog WHERE :filter OR :filter LIMIT :limit")
+                .compose("filter", filter);
+
+        assertEquals(
+                ParameterizedSQLFragment.of(
+                        "SELECT * FROM dog WHERE (name = :name AND age > :age) OR (name = :name AND age > :age) LIMIT :limit"
+                ),
+                select
+        );
+        assertEquals(
+                SQLFragment.of(
+                        "SELECT * FROM dog WHERE (name = ? AND age > ?) OR (name = ? AND age > ?) LIMIT ?",
+                        List.of("fido", 3, "fido", 3, 10)
+                ),
+                select.apply(Map.of("name", "fido", "age", 3, "limit", 10))
+        );
+    }
 }
@@ -0,0 +1,117 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.Query;
+import dev.mccue.jdbc.ResultSets;
+import dev.mccue.jdbc.SQLFragment;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QueryTest {
+    SQLiteDataSource db;
+
+    record Widget(String name, Integer number) {}
+
+    static final Query<Void> INSERT_WIDGET = Query.of(
+            "INSERT INTO widget(name, number) VALUES (?, ?)",
+            String.class,
+            Integer.class
+    );
+
+    static final Query<Widget> WIDGETS_OVER = Query.of(
+            "SELECT name, number FROM widget WHERE number > ? ORDER BY number",
+            ResultSets.getRecord(Widget.class, MethodHandles.lookup()),
+            int.class
+    );
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("""
+                    CREATE TABLE widget (
+                        id integer primary key,
+                        name text not null,
+                        number integer
+                    )
+                    """)) {
+            stmt.execute();
+        }
+        this.db = db;
+    }
+
+    @Test
+    public void insertsAndLists() throws Exception {
+        try (var conn = db.getConnection()) {
+            assertEquals(1, INSERT_WIDGET.executeUpdate(conn, "a", 1));
+            assertEquals(1, INSERT_WIDGET.executeUpdate(conn, "b", null));
+            assertEquals(1, INSERT_WIDGET.executeUpdate(conn, "c", 3));
+
+            assertEquals(
+                    List.of(new Widget("a", 1), new Widget("c", 3)),
+                    WIDGETS_OVER.list(conn, 0)
+            );
+            assertEquals(List.of(new Widget("c", 3)), WIDGETS_OVER.list(conn, 2));
+        }
+    }
+
+    @Test
+    public void reusesPreparedStatement() throws Exception {
+        try (var conn = db.getConnection()) {
+            try (var insert = INSERT_WIDGET.prepare(conn)) {
+                for (int i = 0; i < 5; i++) {
+                    insert.addBatch("w" + i, i);
+                }
+                assertEquals(5, insert.executeBatch().length);
+            }
+
+            try (var select = WIDGETS_OVER.prepare(conn)) {
+                var stmt = select.statement();
+                assertEquals(4, select.list(0).size());
+                assertEquals(1, select.list(3).size());
+                assertSame(stmt, select.statement());
+            }
+        }
+    }
+
+    @Test
+    public void checksValueCount() throws Exception {
+        try (var conn = db.getConnection()) {
+            assertThrows(IllegalArgumentException.class, () -> INSERT_WIDGET.executeUpdate(conn, "a"));
+        }
+    }
+
+    @Test
+    public void checksValueTypes() throws Exception {
+        try (var conn = db.getConnection()) {
+            var e = assertThrows(IllegalArgumentException.class, () -> WIDGETS_OVER.list(conn, 1L));
+            assertEquals("Parameter 1 was declared as int, got java.lang.Long", e.getMessage());
+        }
+    }
+
+    @Test
+    public void requiresGetterToList() throws Exception {
+        try (var conn = db.getConnection()) {
+            assertThrows(IllegalStateException.class, () -> INSERT_WIDGET.list(conn, "a", 1));
+        }
+    }
+
+    @Test
+    public void equalsAndHashCode() {
+        assertEquals(Query.of("SELECT ?", int.class), Query.of("SELECT ?", int.class));
+        assertEquals(Query.of("SELECT ?", int.class).hashCode(), Query.of("SELECT ?", int.class).hashCode());
+        assertNotEquals(Query.of("SELECT ?", int.class), Query.of("SELECT ?", long.class));
+        assertEquals(
+                SQLFragment.of("SELECT ?", List.of(1)),
+                Query.of("SELECT ?", int.class).toSQLFragment(1)
+        );
+    }
+}
@@ -6,6 +6,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.sqlite.SQLiteDataSource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.sql.SQLException;
 import java.util.List;
@@ -493,6 +496,75 @@ public class ResultSetsTest {
     }
      */
 
+    @Test
+    public void transferBinaryStream() throws Exception {
+        var bytes = new byte[200_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        try (var conn = db.getConnection()) {
+            try (var stmt = conn.prepareStatement("CREATE TABLE file (id integer, contents blob)")) {
+                stmt.execute();
+            }
+            try (var stmt = conn.prepareStatement("INSERT INTO file (id, contents) VALUES (1, ?), (2, null)")) {
+                stmt.setBytes(1, bytes);
+                stmt.execute();
+            }
+
+            try (var stmt = conn.prepareStatement("SELECT contents FROM file ORDER BY id")) {
+                var rs = stmt.executeQuery();
+                rs.next();
+                var out = new ByteArrayOutputStream();
+                assertEquals(bytes.length, ResultSets.transferBinaryStream(rs, 1, out));
+                assertArrayEquals(bytes, out.toByteArray());
+
+                var channelOut = new ByteArrayOutputStream();
+                assertEquals(
+                        bytes.length,
+                        ResultSets.transferBinaryStream(rs, "contents", Channels.newChannel(channelOut))
+                );
+                assertArrayEquals(bytes, channelOut.toByteArray());
+
+                var path = Files.createTempFile("transfer", "bin");
+                assertEquals(bytes.length, ResultSets.transferBinaryStream(rs, 1, path));
+                assertArrayEquals(bytes, Files.readAllBytes(path));
+
+                rs.next();
+                assertEquals(-1, ResultSets.transferBinaryStream(rs, 1, new ByteArrayOutputStream()));
+            }
+        }
+    }
 
+    @Test
+    public void transferBinaryStreamMaxSize() throws Exception {
+        try (var conn = db.getConnection()) {
+            try (var stmt = conn.prepareStatement("SELECT x'0102030405'")) {
+                var rs = stmt.executeQuery();
+                rs.next();
+                assertEquals(5, ResultSets.transferBinaryStream(rs, 1, new ByteArrayOutputStream(), 5));
 
+                var path = Files.createTempFile("transfer", "bin");
+                assertThrows(SQLException.class, () -> ResultSets.transferBinaryStream(rs, 1, path, 4));
+                assertFalse(Files.exists(path));
+            }
+        }
+    }
+
+    @Test
+    public void transferCharacterStream() throws Exception {
+        try (var conn = db.getConnection()) {
+            try (var stmt = conn.prepareStatement("SELECT name FROM widget ORDER BY id")) {
+                var rs = stmt.executeQuery();
+                rs.next();
+                var writer = new StringWriter();
+                assertEquals(1, ResultSets.transferCharacterStream(rs, "name", writer));
+                assertEquals("a", writer.toString());
+
+                assertThrows(
+                        SQLException.class,
+                        () -> ResultSets.transferCharacterStream(rs, 1, new StringWriter(), 0)
+                );
+            }
+        }
+    }
 }
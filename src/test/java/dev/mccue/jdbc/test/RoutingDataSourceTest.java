@@ -0,0 +1,137 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.DataSources;
+import dev.mccue.jdbc.NestedTransactions;
+import dev.mccue.jdbc.RoutingDataSource;
+import dev.mccue.jdbc.TransactionOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RoutingDataSourceTest {
+    DataSource primary;
+    DataSource replicaA;
+    DataSource replicaB;
+
+    // SQLite can't change the read-only flag of an open connection, so
+    // pretend to for the sake of running read-only transactions on the primary.
+    static DataSource database(String name) throws Exception {
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + Files.createTempFile("test", "db"));
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("CREATE TABLE source AS SELECT ? AS name")) {
+            stmt.setString(1, name);
+            stmt.execute();
+        }
+        return (DataSource) Proxy.newProxyInstance(
+                RoutingDataSourceTest.class.getClassLoader(),
+                new Class<?>[] { DataSource.class },
+                (proxy, method, args) -> {
+                    var result = invoke(method, db, args);
+                    if (!(result instanceof Connection conn)) {
+                        return result;
+                    }
+                    return Proxy.newProxyInstance(
+                            RoutingDataSourceTest.class.getClassLoader(),
+                            new Class<?>[] { Connection.class },
+                            (connProxy, connMethod, connArgs) ->
+                                    connMethod.getName().equals("setReadOnly")
+                                            ? null
+                                            : invoke(connMethod, conn, connArgs)
+                    );
+                }
+        );
+    }
+
+    static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static String source(Connection conn) throws SQLException {
+        try (var stmt = conn.prepareStatement("SELECT name FROM source")) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        primary = database("primary");
+        replicaA = database("a");
+        replicaB = database("b");
+    }
+
+    @Test
+    public void routesReadOnlyTransactionsToReplicas() throws Exception {
+        var db = RoutingDataSource.builder(primary)
+                .replica(replicaA)
+                .replica(replicaB)
+                .build();
+        var readOnly = TransactionOptions.builder().readOnly(true).build();
+
+        var sources = new HashSet<String>();
+        for (int i = 0; i < 50; i++) {
+            sources.add(DataSources.transact(db, readOnly, RoutingDataSourceTest::source));
+        }
+        assertEquals(Set.of("a", "b"), sources);
+
+        assertEquals("primary", DataSources.transact(db, RoutingDataSourceTest::source));
+        try (var conn = db.getConnection()) {
+            assertEquals("primary", source(conn));
+        }
+    }
+
+    @Test
+    public void readsOwnWritesFromThePrimary() throws Exception {
+        var db = RoutingDataSource.builder(primary)
+                .replica(replicaA)
+                .readYourWritesWindow(Duration.ofMinutes(1))
+                .build();
+        var readOnly = TransactionOptions.builder().readOnly(true).build();
+
+        assertEquals("a", DataSources.transact(db, readOnly, RoutingDataSourceTest::source));
+        DataSources.transact(db, conn -> {});
+        assertEquals("primary", DataSources.transact(db, readOnly, RoutingDataSourceTest::source));
+    }
+
+    @Test
+    public void writesCannotNestInReadOnlyTransactions() throws Exception {
+        var db = RoutingDataSource.builder(primary)
+                .replica(replicaA)
+                .build();
+        var readOnly = TransactionOptions.builder()
+                .readOnly(true)
+                .nestedTransactions(NestedTransactions.IGNORE)
+                .build();
+        var requiresNew = TransactionOptions.builder().requiresNew(true).build();
+
+        DataSources.transact(db, readOnly, outer -> {
+            assertEquals("a", source(outer));
+            DataSources.transact(db, readOnly, inner -> {
+                assertSame(outer, inner);
+            });
+            assertThrows(SQLException.class, () -> DataSources.transact(db, inner -> {}));
+            assertEquals("primary", DataSources.transact(db, requiresNew, RoutingDataSourceTest::source));
+        });
+    }
+}
@@ -4,9 +4,11 @@ import dev.mccue.jdbc.SQLFragment;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class SQLFragmentTest {
     @Test
@@ -56,4 +58,36 @@ public class SQLFragmentTest {
         assertEquals(SQLFragment.of("A", List.of("B")).hashCode(), SQLFragment.of("A", List.of("B")).hashCode());
         assertEquals(SQLFragment.of("A", Arrays.asList("B", null)).hashCode(), SQLFragment.of("A", Arrays.asList("B", null)).hashCode());
     }
+
+    @Test
+    public void padsPlaceholdersToPowersOfTwo() {
+        assertEquals(SQLFragment.of("?", Arrays.asList((Object) null)), SQLFragment.ofPaddedPlaceholders(List.of()));
+        assertEquals(SQLFragment.of("?", List.of(1)), SQLFragment.ofPaddedPlaceholders(List.of(1)));
+        assertEquals(SQLFragment.of("?,?", List.of(1, 2)), SQLFragment.ofPaddedPlaceholders(List.of(1, 2)));
+        assertEquals(
+                SQLFragment.of("?,?,?,?", List.of(1, 2, 3, 3)),
+                SQLFragment.ofPaddedPlaceholders(List.of(1, 2, 3))
+        );
+        assertEquals(
+                SQLFragment.of("?,?,?,?,?,?,?,?", List.of(1, 2, 3, 4, 5, 5, 5, 5)),
+                SQLFragment.ofPaddedPlaceholders(List.of(1, 2, 3, 4, 5))
+        );
+    }
+
+    @Test
+    public void padsPlaceholdersToLadder() {
+        assertEquals(
+                SQLFragment.of("?,?,?", List.of(1, 2, 2)),
+                SQLFragment.ofPaddedPlaceholders(List.of(1, 2), 3, 10)
+        );
+        assertEquals(
+                10,
+                SQLFragment.ofPaddedPlaceholders(List.of(1, 2, 3, 4), 3, 10).parameters().size()
+        );
+        assertEquals(
+                20,
+                SQLFragment.ofPaddedPlaceholders(Collections.nCopies(11, 1), 3, 10).parameters().size()
+        );
+        assertThrows(IllegalArgumentException.class, () -> SQLFragment.ofPaddedPlaceholders(List.of(1), 10, 3));
+    }
 }
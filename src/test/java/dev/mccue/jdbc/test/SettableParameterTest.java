@@ -1,10 +1,28 @@
 package dev.mccue.jdbc.test;
 
+import dev.mccue.jdbc.SQLFragment;
 import dev.mccue.jdbc.SettableParameter;
 import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
 
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class SettableParameterTest {
     @Test
@@ -13,4 +31,117 @@ public class SettableParameterTest {
         assertEquals(SettableParameter.ofBoolean(true), SettableParameter.ofBoolean(true));
         assertNotEquals(SettableParameter.ofBoolean(true), SettableParameter.ofBoolean(false));
     }
+
+    @Test
+    public void setsBinaryStreamsFromFilesAndBuffers() throws Exception {
+        var bytes = new byte[200_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        var file = Files.createTempFile("test", "bin");
+        Files.write(file, bytes);
+
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + Files.createTempFile("test", "db"));
+        try (var conn = db.getConnection();
+             var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            try (var stmt = SQLFragment.of("SELECT ?, ?, ?", List.of(
+                    SettableParameter.ofBinaryStream(file),
+                    SettableParameter.ofBinaryStream(channel, 100, 1000),
+                    SettableParameter.ofBinaryStream(direct)
+            )).prepareStatement(conn)) {
+                var rs = stmt.executeQuery();
+                rs.next();
+                assertArrayEquals(bytes, rs.getBytes(1));
+                assertArrayEquals(Arrays.copyOfRange(bytes, 100, 1100), rs.getBytes(2));
+                assertArrayEquals(bytes, rs.getBytes(3));
+            }
+            assertEquals(0, channel.position());
+            assertEquals(0, direct.position());
+        }
+    }
+
+    @Test
+    public void closesFilesOnceTheyHaveBeenRead() throws Exception {
+        var fds = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(fds));
+
+        var file = Files.createTempFile("test", "bin");
+        Files.write(file, new byte[1000]);
+
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + Files.createTempFile("test", "db"));
+        try (var conn = db.getConnection()) {
+            try (var stmt = conn.prepareStatement("SELECT 1")) {
+                stmt.executeQuery().close();
+            }
+            long before;
+            try (var open = Files.list(fds)) {
+                before = open.count();
+            }
+            for (int i = 0; i < 50; i++) {
+                try (var stmt = SQLFragment.of("SELECT length(?), length(?)", List.of(
+                        SettableParameter.ofBinaryStream(file),
+                        SettableParameter.ofBinaryStream(file)
+                )).prepareStatement(conn)) {
+                    var rs = stmt.executeQuery();
+                    rs.next();
+                    assertEquals(1000, rs.getInt(1));
+                    assertEquals(1000, rs.getInt(2));
+                }
+            }
+            long after;
+            try (var open = Files.list(fds)) {
+                after = open.count();
+            }
+            assertTrue(after - before < 5, "Leaked " + (after - before) + " file descriptors");
+        }
+    }
+
+    @Test
+    public void createsArraysFromTheStatementConnection() throws Exception {
+        var created = new ArrayList<Object>();
+        var array = (Array) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Array.class },
+                (proxy, method, args) -> null
+        );
+        var conn = (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "createArrayOf" -> {
+                        created.add(args[0]);
+                        created.add(Arrays.asList((Object[]) args[1]));
+                        yield array;
+                    }
+                    case "isWrapperFor" -> false;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+        );
+        var set = new ArrayList<Object>();
+        var stmt = (PreparedStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getConnection" -> conn;
+                    case "setArray" -> {
+                        set.add(args[1]);
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+        );
+
+        SettableParameter.ofLongArray(new long[] { 1, 2, 3 }).setParameter(stmt, 1);
+        SettableParameter.ofIntArray("int4", new int[] { 4 }).setParameter(stmt, 1);
+        SettableParameter.ofStringArray(new String[] { "a" }).setParameter(stmt, 1);
+
+        assertEquals(
+                List.of("bigint", List.of(1L, 2L, 3L), "int4", List.of(4), "varchar", List.of("a")),
+                created
+        );
+        assertEquals(List.of(array, array, array), set);
+    }
 }
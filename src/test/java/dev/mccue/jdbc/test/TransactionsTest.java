@@ -5,11 +5,32 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.sqlite.SQLiteDataSource;
 
+import javax.sql.DataSource;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TransactionsTest {
     SQLiteDataSource db;
@@ -152,4 +173,612 @@ public class TransactionsTest {
             );
         }
     }
+
+    @Test
+    public void nestedTransactionsAreProhibited() throws Exception {
+        try (var conn = db.getConnection()) {
+            for (int i = 0; i < 3; i++) {
+                var e = assertThrows(SQLException.class, () -> Connections.transact(conn, () -> {
+                    Connections.transact(conn, () -> {});
+                }));
+                assertEquals("Nested transactions are prohibited", e.getMessage());
+            }
+
+            // Transactions on other connections are not nested
+            try (var other = db.getConnection()) {
+                Connections.transact(conn, () -> {
+                    Connections.transact(other, () -> {});
+                });
+            }
+        }
+
+        assertThrows(SQLException.class, () -> DataSources.transact(db, conn -> {
+            Connections.transact(conn, () -> {});
+        }));
+    }
+
+    @Test
+    public void transactOnVirtualThreads() throws Exception {
+        var threads = new ArrayList<Thread>();
+        var failures = new ConcurrentLinkedQueue<Throwable>();
+        for (int i = 0; i < 8; i++) {
+            var number = i;
+            threads.add(Thread.ofVirtual().start(() -> {
+                try {
+                    for (int j = 0; j < 2; j++) {
+                        DataSources.transact(db, conn -> {
+                            try (var stmt = conn.prepareStatement("""
+                                    INSERT INTO widget(name, number)
+                                    VALUES ('v', ?)
+                                    """)) {
+                                stmt.setInt(1, number);
+                                stmt.execute();
+                            }
+                            assertThrows(SQLException.class, () -> Connections.transact(conn, () -> {}));
+                        });
+                    }
+                } catch (Throwable t) {
+                    failures.add(t);
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), List.copyOf(failures));
+
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("SELECT count(*) FROM widget")) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals(16, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void transactionsOnASharedConnectionWait() throws Exception {
+        try (var conn = db.getConnection()) {
+            var waitsBefore = TransactionMetrics.lockWaits();
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            var order = new ConcurrentLinkedQueue<String>();
+
+            var first = Thread.ofVirtual().start(() -> {
+                try {
+                    Connections.transact(conn, () -> {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                        order.add("first");
+                    });
+                } catch (Exception e) {
+                    order.add(e.toString());
+                }
+            });
+            started.await();
+            var second = Thread.ofVirtual().start(() -> {
+                try {
+                    Connections.transact(conn, () -> {
+                        order.add("second");
+                    });
+                } catch (Exception e) {
+                    order.add(e.toString());
+                }
+            });
+
+            var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (second.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            assertEquals(Thread.State.WAITING, second.getState(), () -> "order=" + order);
+            release.countDown();
+            first.join();
+            second.join();
+
+            assertEquals(List.of("first", "second"), List.copyOf(order));
+            assertTrue(TransactionMetrics.lockWaits() > waitsBefore);
+            assertTrue(TransactionMetrics.lockWaitNanos() > 0);
+        }
+    }
+
+    static Connection equalToEveryConnection(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "equals" -> true;
+                    case "hashCode" -> 0;
+                    case "isWrapperFor" -> false;
+                    default -> {
+                        try {
+                            yield method.invoke(conn, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+                }
+        );
+    }
+
+    @Test
+    public void connectionsAreLockedByIdentity() throws Exception {
+        try (var a = db.getConnection(); var b = db.getConnection()) {
+            var first = equalToEveryConnection(a);
+            var second = equalToEveryConnection(b);
+            assertEquals(first, second);
+
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            var holder = Thread.ofVirtual().start(() -> {
+                try {
+                    Connections.transact(first, () -> {
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            try {
+                started.await();
+                var other = Thread.ofVirtual().start(() -> {
+                    try {
+                        Connections.transact(second, () -> {});
+                    } catch (SQLException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                assertTrue(other.join(Duration.ofSeconds(5)));
+            } finally {
+                release.countDown();
+                holder.join();
+            }
+        }
+    }
+
+    @Test
+    public void trackedConnectionSkipsRedundantCalls() throws Exception {
+        try (var conn = db.getConnection()) {
+            var calls = new ArrayList<String>();
+            var counting = (Connection) Proxy.newProxyInstance(
+                    getClass().getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    (proxy, method, args) -> {
+                        calls.add(method.getName());
+                        try {
+                            return method.invoke(conn, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    }
+            );
+            var tracked = Connections.trackState(counting);
+            assertSame(conn, tracked.unwrap(Connection.class));
+
+            var options = TransactionOptions.builder()
+                    .isolation(Connection.TRANSACTION_SERIALIZABLE)
+                    .build();
+            for (int i = 0; i < 3; i++) {
+                Connections.transact(tracked, options, () -> {});
+            }
+
+            assertEquals(1, calls.stream().filter("getAutoCommit"::equals).count());
+            assertEquals(1, calls.stream().filter("getTransactionIsolation"::equals).count());
+            // SQLite connections are already serializable
+            assertEquals(0, calls.stream().filter("setTransactionIsolation"::equals).count());
+            assertEquals(0, calls.stream().filter("isReadOnly"::equals).count());
+            assertEquals(3, calls.stream().filter("commit"::equals).count());
+            assertTrue(tracked.getAutoCommit());
+        }
+    }
+
+    @Test
+    public void savepointNestedTransactions() throws Exception {
+        var savepoint = TransactionOptions.builder()
+                .nestedTransactions(NestedTransactions.SAVEPOINT)
+                .build();
+        try (var conn = db.getConnection()) {
+            SQLConsumer<String> insertName = name -> {
+                try (var stmt = conn.prepareStatement("INSERT INTO widget(name) VALUES (?)")) {
+                    stmt.setString(1, name);
+                    stmt.execute();
+                }
+            };
+
+            Connections.transact(conn, () -> {
+                insertName.accept("outer");
+                assertThrows(RuntimeException.class, () -> Connections.transact(conn, savepoint, () -> {
+                    insertName.accept("failed");
+                    throw new RuntimeException("Should roll back to the savepoint");
+                }));
+                Connections.transact(conn, savepoint, () -> insertName.accept("inner"));
+            });
+
+            // Nested transactions use the mode of the transaction they are in
+            Connections.transact(conn, savepoint, () -> {
+                assertThrows(RuntimeException.class, () -> Connections.transact(conn, () -> {
+                    insertName.accept("also failed");
+                    throw new RuntimeException("Should roll back to the savepoint");
+                }));
+            });
+
+            try (var stmt = conn.prepareStatement("SELECT name FROM widget ORDER BY id")) {
+                assertEquals(
+                        List.of("outer", "inner"),
+                        ResultSets.stream(stmt.executeQuery(), rs -> rs.getString(1)).toList()
+                );
+            }
+        }
+    }
+
+    @Test
+    public void retriesRetryableFailures() throws Exception {
+        var options = TransactionOptions.builder()
+                .retryPolicy(RetryPolicy.builder()
+                        .maxAttempts(3)
+                        .initialBackoff(Duration.ofMillis(1))
+                        .build())
+                .build();
+        var retriesBefore = TransactionMetrics.retries();
+
+        var attempts = new AtomicInteger();
+        var result = DataSources.transact(db, options, conn -> {
+            try (var stmt = conn.prepareStatement("INSERT INTO widget(name) VALUES ('retried')")) {
+                stmt.execute();
+            }
+            if (attempts.incrementAndGet() < 3) {
+                throw new RuntimeException(new SQLException("could not serialize access", "40001"));
+            }
+            return attempts.get();
+        });
+        assertEquals(3, result);
+        assertEquals(retriesBefore + 2, TransactionMetrics.retries());
+
+        // Gives up after the last attempt
+        attempts.set(0);
+        assertThrows(SQLException.class, () -> DataSources.transact(db, options, (SQLConsumer<Connection>) conn -> {
+            attempts.incrementAndGet();
+            throw new SQLException("deadlock detected", "40P01");
+        }));
+        assertEquals(3, attempts.get());
+
+        // Does not retry other failures
+        attempts.set(0);
+        assertThrows(SQLException.class, () -> DataSources.transact(db, options, (SQLConsumer<Connection>) conn -> {
+            attempts.incrementAndGet();
+            throw new SQLException("syntax error", "42601");
+        }));
+        assertEquals(1, attempts.get());
+
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("SELECT count(*) FROM widget")) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals(1, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void nestedDataSourceTransactionsReuseTheConnection() throws Exception {
+        assertThrows(SQLException.class, () -> DataSources.transact(db, outer -> {
+            DataSources.transact(db, inner -> {});
+        }));
+
+        var savepoint = TransactionOptions.builder()
+                .nestedTransactions(NestedTransactions.SAVEPOINT)
+                .build();
+        DataSources.transact(db, savepoint, outer -> {
+            DataSources.transact(db, inner -> {
+                assertSame(outer, inner);
+            });
+
+            var requiresNew = TransactionOptions.builder()
+                    .requiresNew(true)
+                    .build();
+            DataSources.transact(db, requiresNew, inner -> {
+                assertNotSame(outer, inner);
+            });
+        });
+    }
+
+    @Test
+    public void transactAsyncRespectsConcurrencyLimit() throws Exception {
+        DataSources.limitConcurrency(db, 2);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            var n = i;
+            futures.add(DataSources.transactAsync(db, conn -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return n;
+            }));
+        }
+
+        var sum = CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(__ -> futures.stream().mapToInt(CompletableFuture::join).sum())
+                .get(10, TimeUnit.SECONDS);
+        assertEquals(45, sum);
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void cancellingTransactAsyncRollsBack() throws Exception {
+        // The connection is only closed once the transaction has ended
+        var connectionClosed = new CountDownLatch(1);
+        var dataSource = (DataSource) Proxy.newProxyInstance(
+                DataSource.class.getClassLoader(),
+                new Class<?>[] { DataSource.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getConnection")) {
+                        var conn = db.getConnection();
+                        return Proxy.newProxyInstance(
+                                Connection.class.getClassLoader(),
+                                new Class<?>[] { Connection.class },
+                                (p, m, a) -> {
+                                    try {
+                                        return m.invoke(conn, a);
+                                    } catch (InvocationTargetException e) {
+                                        throw e.getCause();
+                                    } finally {
+                                        if (m.getName().equals("close")) {
+                                            connectionClosed.countDown();
+                                        }
+                                    }
+                                }
+                        );
+                    }
+                    try {
+                        return method.invoke(db, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+        );
+
+        var started = new CountDownLatch(1);
+        var future = DataSources.transactAsync(dataSource, conn -> {
+            try (var stmt = conn.prepareStatement("INSERT INTO widget(name) VALUES ('cancelled')")) {
+                stmt.execute();
+            }
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+        });
+        started.await();
+        assertTrue(future.cancel(true));
+        assertThrows(CancellationException.class, future::join);
+        assertTrue(connectionClosed.await(5, TimeUnit.SECONDS));
+
+        DataSources.transact(db, conn -> {
+            try (var stmt = conn.prepareStatement("SELECT count(*) FROM widget")) {
+                var rs = stmt.executeQuery();
+                rs.next();
+                assertEquals(0, rs.getInt(1));
+            }
+        });
+    }
+
+    @Test
+    public void transactAsyncTracksNestedTransactions() throws Exception {
+        var options = TransactionOptions.builder()
+                .nestedTransactions(NestedTransactions.IGNORE)
+                .build();
+        var same = DataSources.transactAsync(db, options, outer -> {
+            return DataSources.transact(db, inner -> inner == outer);
+        });
+        assertTrue(same.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void concurrencyLimitCanBeLoweredWhileRunning() throws Exception {
+        DataSources.limitConcurrency(db, 4);
+        var release = new CountDownLatch(1);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(DataSources.transactAsync(db, conn -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }));
+        }
+
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (running.get() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(4, running.get());
+        DataSources.limitConcurrency(db, 1);
+        maxRunning.set(0);
+        release.countDown();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        // The rest only start once all four have finished, then one at a time
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void hooksRunAfterCommitOrRollback() throws Exception {
+        var ran = new ArrayList<String>();
+        DataSources.transact(db, conn -> {
+            Connections.afterCommit(conn, () -> ran.add("commit"));
+            Connections.afterRollback(conn, () -> ran.add("rollback"));
+            assertEquals(List.of(), ran);
+        });
+        assertEquals(List.of("commit"), ran);
+
+        ran.clear();
+        assertThrows(SQLException.class, () -> DataSources.transact(db, (SQLConsumer<Connection>) conn -> {
+            Connections.afterCommit(conn, () -> ran.add("commit"));
+            Connections.afterRollback(conn, () -> ran.add("rollback"));
+            throw new SQLException("fail");
+        }));
+        assertEquals(List.of("rollback"), ran);
+
+        ran.clear();
+        DataSources.transact(db, TransactionOptions.builder().rollbackOnly(true).build(), conn -> {
+            Connections.afterCommit(conn, () -> ran.add("commit"));
+            Connections.afterRollback(conn, () -> ran.add("rollback"));
+        });
+        assertEquals(List.of("rollback"), ran);
+
+        try (var conn = db.getConnection()) {
+            assertThrows(IllegalStateException.class, () -> Connections.afterCommit(conn, () -> {}));
+        }
+    }
+
+    @Test
+    public void hooksRunOnceTheConnectionIsLetGo() throws Exception {
+        var closed = new ArrayList<Boolean>();
+        DataSources.transact(db, conn -> {
+            Connections.afterCommit(conn, () -> {
+                try {
+                    closed.add(conn.isClosed());
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        });
+        assertEquals(List.of(true), closed);
+
+        try (var conn = db.getConnection()) {
+            var otherThreadGotLock = new ArrayList<Boolean>();
+            Connections.transact(conn, c -> {
+                Connections.afterCommit(c, () -> {
+                    var other = Thread.ofVirtual().start(() -> {
+                        try {
+                            Connections.transact(conn, () -> {});
+                            otherThreadGotLock.add(true);
+                        } catch (SQLException e) {
+                            otherThreadGotLock.add(false);
+                        }
+                    });
+                    try {
+                        assertTrue(other.join(Duration.ofSeconds(5)));
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            });
+            assertEquals(List.of(true), otherThreadGotLock);
+        }
+    }
+
+    @Test
+    public void hooksWaitForTheOutermostTransaction() throws Exception {
+        var ran = new ArrayList<String>();
+        var savepoint = TransactionOptions.builder()
+                .nestedTransactions(NestedTransactions.SAVEPOINT)
+                .build();
+        DataSources.transact(db, savepoint, outer -> {
+            Connections.afterCommit(outer, () -> ran.add("outer"));
+            DataSources.transact(db, inner -> {
+                Connections.afterCommit(inner, () -> ran.add("inner"));
+            });
+            assertThrows(SQLException.class, () -> DataSources.transact(db, (SQLConsumer<Connection>) inner -> {
+                Connections.afterCommit(inner, () -> ran.add("dropped"));
+                Connections.afterRollback(inner, () -> ran.add("undone"));
+                throw new SQLException("fail");
+            }));
+            assertEquals(List.of(), ran);
+        });
+        assertEquals(List.of("outer", "inner", "undone"), ran);
+    }
+
+    @Test
+    public void hooksCanRunOnAnExecutor() throws Exception {
+        var ran = new CountDownLatch(1);
+        var hookThread = new CompletableFuture<Thread>();
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var options = TransactionOptions.builder()
+                    .hookExecutor(executor)
+                    .build();
+            DataSources.transact(db, options, conn -> {
+                Connections.afterCommit(conn, () -> {
+                    throw new RuntimeException("logged, not thrown");
+                });
+                Connections.afterCommit(conn, () -> {
+                    hookThread.complete(Thread.currentThread());
+                    ran.countDown();
+                });
+            });
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            assertNotSame(Thread.currentThread(), hookThread.join());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void tasksOnOtherThreadsCanInheritTransactions() throws Exception {
+        var ignore = TransactionOptions.builder()
+                .nestedTransactions(NestedTransactions.IGNORE)
+                .build();
+        var ran = new ConcurrentLinkedQueue<String>();
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            DataSources.transact(db, ignore, outer -> {
+                var joined = await(executor.submit(Connections.inheritTransactions(() ->
+                        DataSources.transact(db, ignore, inner -> {
+                            Connections.afterCommit(inner, () -> ran.add("child"));
+                            return inner;
+                        })
+                )));
+                assertSame(outer, joined);
+
+                var prohibit = TransactionOptions.builder()
+                        .nestedTransactions(NestedTransactions.PROHIBIT)
+                        .build();
+                var prohibited = executor.submit(Connections.inheritTransactions(() ->
+                        DataSources.transact(db, prohibit, inner -> inner)
+                ));
+                assertThrows(SQLException.class, () -> await(prohibited));
+
+                // Without inheriting, the other thread knows nothing about the transaction
+                var unrelated = await(executor.submit(() -> DataSources.transact(db, inner -> inner)));
+                assertNotSame(outer, unrelated);
+                assertEquals(List.of(), List.copyOf(ran));
+            });
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(List.of("child"), List.copyOf(ran));
+    }
+
+    static <T> T await(Future<T> future) throws SQLException {
+        try {
+            return future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException | TimeoutException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
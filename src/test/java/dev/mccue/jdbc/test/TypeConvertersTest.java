@@ -0,0 +1,147 @@
+package dev.mccue.jdbc.test;
+
+import dev.mccue.jdbc.ParameterBinders;
+import dev.mccue.jdbc.ResultSets;
+import dev.mccue.jdbc.SQLFragment;
+import dev.mccue.jdbc.TypeConverters;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteDataSource;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TypeConvertersTest {
+    SQLiteDataSource db;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        var path = Files.createTempFile("test", "db");
+        var db = new SQLiteDataSource();
+        db.setUrl("jdbc:sqlite:" + path);
+        this.db = db;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TypeConverters.unregister(Color.class);
+        TypeConverters.unregister(Instant.class);
+        TypeConverters.unregister(UUID.class);
+        TypeConverters.unregister(Meters.class);
+    }
+
+    public enum Color {
+        RED,
+        GREEN {
+            @Override
+            public String toString() {
+                return "green";
+            }
+        }
+    }
+
+    public record Paint(Color color, Instant mixedAt, UUID batch, Integer count) {}
+
+    @Test
+    public void readsAndWritesOptInTypes() throws Exception {
+        TypeConverters.register(Color.class, TypeConverters.ofEnum(Color.class));
+        TypeConverters.register(Instant.class, TypeConverters.ofInstant());
+        TypeConverters.register(UUID.class, TypeConverters.ofUUID());
+
+        var mixedAt = Instant.ofEpochMilli(1_700_000_000_123L);
+        var batch = UUID.randomUUID();
+        try (var conn = db.getConnection();
+             var stmt = SQLFragment.of(
+                     "SELECT ? AS color, ? AS mixedAt, ? AS batch, ? AS count",
+                     Arrays.asList(Color.GREEN, mixedAt, batch.toString(), null)
+             ).prepareStatement(conn)) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals("GREEN", rs.getString(1));
+            assertEquals(new Paint(Color.GREEN, mixedAt, batch, null), ResultSets.getRecord(rs, Paint.class));
+            assertEquals(Color.GREEN, TypeConverters.reader(Color.class).read(rs, 1));
+        }
+    }
+
+    @Test
+    public void optInTypesAreNotUsedByDefault() throws Exception {
+        var calls = new ArrayList<String>();
+        var stmt = (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    return null;
+                }
+        );
+        ParameterBinders.bind(stmt, 1, Color.RED);
+        ParameterBinders.bind(stmt, 2, Instant.EPOCH);
+        assertEquals(List.of("setObject", "setObject"), calls);
+    }
+
+    @Test
+    public void unknownEnumConstant() throws Exception {
+        try (var conn = db.getConnection();
+             var stmt = conn.prepareStatement("SELECT 'BLUE'")) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertThrows(SQLException.class, () -> TypeConverters.ofEnum(Color.class).read(rs, 1));
+        }
+    }
+
+    public record Meters(double value) {}
+
+    public record Distance(Meters meters) {}
+
+    @Test
+    public void registeredConverterIsUsedBothWays() throws Exception {
+        TypeConverters.register(
+                Meters.class,
+                (rs, i) -> new Meters(ResultSets.getDoubleNotNull(rs, i) / 100),
+                (stmt, i, meters) -> stmt.setDouble(i, meters.value() * 100)
+        );
+
+        try (var conn = db.getConnection();
+             var stmt = SQLFragment.of(
+                     "SELECT ? AS meters, ?",
+                     List.of(new Meters(1.5), new Meters(2))
+             ).prepareStatement(conn)) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals(150, rs.getDouble(1));
+            assertEquals(new Distance(new Meters(1.5)), ResultSets.getRecord(rs, Distance.class));
+            assertEquals(new Meters(2), TypeConverters.reader(Meters.class).read(rs, 2));
+        }
+    }
+
+    @Test
+    public void unregisterKeepsBindersRegisteredSeparately() throws Exception {
+        TypeConverters.register(
+                Meters.class,
+                (rs, i) -> new Meters(ResultSets.getDoubleNotNull(rs, i)),
+                (stmt, i, meters) -> stmt.setDouble(i, meters.value())
+        );
+        ParameterBinders.register(Meters.class, (stmt, i, meters) -> stmt.setString(i, meters.value() + "m"));
+        TypeConverters.unregister(Meters.class);
+
+        try (var conn = db.getConnection();
+             var stmt = SQLFragment.of("SELECT ?", List.of(new Meters(2))).prepareStatement(conn)) {
+            var rs = stmt.executeQuery();
+            rs.next();
+            assertEquals("2.0m", rs.getString(1));
+        } finally {
+            ParameterBinders.unregister(Meters.class);
+        }
+    }
+}